@@ -0,0 +1,79 @@
+package com.springBoot.saveMe.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+/**
+ * Valutazione delle richieste condizionali (If-None-Match, If-Modified-Since).
+ * La verifica avviene prima di caricare il contenuto, così una risposta 304
+ * non legge il disco e non costruisce i DTO.
+ */
+final class ConditionalRequests {
+
+    /**
+     * Contenuto dei file: i proxy possono conservarlo ma devono rivalidarlo a ogni richiesta,
+     * quindi l'accesso viene sempre verificato dal server.
+     */
+    static final CacheControl CONTENT_CACHE = CacheControl.noCache().cachePublic();
+
+    /**
+     * Elenchi e metadati: dati del singolo utente, conservati solo dal client e sempre rivalidati.
+     */
+    static final CacheControl PRIVATE_CACHE = CacheControl.noCache().cachePrivate();
+
+    private ConditionalRequests() {
+    }
+
+    /**
+     * Verifica se la versione in possesso del client è ancora valida.
+     * If-None-Match usa il confronto debole e ha la precedenza su If-Modified-Since.
+     *
+     * @param requestHeaders gli header della richiesta
+     * @param etag l'ETag corrente della risorsa
+     * @param lastModified la data di ultima modifica in millisecondi (-1 se non disponibile)
+     * @return true se si può rispondere 304 Not Modified
+     */
+    static boolean isNotModified(HttpHeaders requestHeaders, String etag, long lastModified) {
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            String opaqueTag = stripWeakPrefix(etag);
+            for (String candidate : ifNoneMatch) {
+                if ("*".equals(candidate) || opaqueTag.equals(stripWeakPrefix(candidate))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (lastModified >= 0) {
+            try {
+                long ifModifiedSince = requestHeaders.getIfModifiedSince();
+                return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Costruisce la risposta 304 Not Modified con i validatori correnti.
+     *
+     * @param etag l'ETag corrente della risorsa
+     * @param cacheControl la politica di cache della risorsa
+     * @return la risposta senza corpo
+     */
+    static <T> ResponseEntity<T> notModified(String etag, CacheControl cacheControl) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .build();
+    }
+
+    private static String stripWeakPrefix(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
@@ -1,14 +1,20 @@
 package com.springBoot.saveMe.controller;
 
+import com.springBoot.saveMe.dto.file.BatchUploadResultDto;
 import com.springBoot.saveMe.dto.file.FileResponseDto;
 import com.springBoot.saveMe.model.entity.StoredFile;
 import com.springBoot.saveMe.model.entity.User;
+import com.springBoot.saveMe.model.listing.KeysetPage;
+import com.springBoot.saveMe.model.listing.ListingQuery;
 import com.springBoot.saveMe.service.FileService;
+import com.springBoot.saveMe.service.ListingVersionService;
 import com.springBoot.saveMe.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -16,6 +22,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -30,6 +37,8 @@ public class FileController {
 
     private final FileService fileService;
     private final UserService userService;
+    private final FileDownloadSupport fileDownloadSupport;
+    private final ListingVersionService listingVersionService;
 
     /**
      * Endpoint per caricare un file.
@@ -60,16 +69,91 @@ public class FileController {
         }
     }
 
+    /**
+     * Endpoint per caricare più file in una sola richiesta.
+     * Utente e cartella vengono verificati una sola volta per tutti i file;
+     * la risposta riporta l'esito di ciascun file, nello stesso ordine della richiesta.
+     * Un file non leggibile o non salvabile fallisce da solo; un errore nella registrazione finale
+     * annulla tutti i file non ancora in errore, ciascuno con la causa nel campo error.
+     * 
+     * @param files i file da caricare
+     * @param folderId l'ID della cartella (opzionale)
+     * @param authentication l'oggetto di autenticazione
+     * @return l'esito del caricamento di ciascun file
+     */
+    @PostMapping("/upload/batch")
+    public ResponseEntity<List<BatchUploadResultDto>> uploadFiles(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(value = "folderId", required = false) Long folderId,
+            Authentication authentication) {
+        
+        log.info("Richiesta di upload multiplo: {} file, cartella: {}", files.size(), folderId);
+        
+        try {
+            User user = userService.getUserByUsername(authentication.getName());
+            return ResponseEntity.ok(fileService.uploadBatch(files, folderId, user));
+        } catch (RuntimeException e) {
+            log.error("Errore durante l'upload multiplo: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Endpoint per caricare un file in streaming.
+     * Il corpo della richiesta contiene direttamente i byte del file (non multipart):
+     * viene letto in modo incrementale e scritto nello storage in un solo passaggio,
+     * senza il file temporaneo del container e senza limiti di dimensione multipart.
+     * 
+     * @param fileName il nome originale del file
+     * @param folderId l'ID della cartella (opzionale)
+     * @param contentType il content type del file (opzionale, altrimenti rilevato dal contenuto)
+     * @param request la richiesta HTTP
+     * @param authentication l'oggetto di autenticazione
+     * @return i metadati del file caricato
+     */
+    @PostMapping("/upload/stream")
+    public ResponseEntity<FileResponseDto> uploadFileStream(
+            @RequestParam("fileName") String fileName,
+            @RequestParam(value = "folderId", required = false) Long folderId,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+            HttpServletRequest request,
+            Authentication authentication) {
+        
+        log.info("Richiesta di upload file in streaming: {}, cartella: {}", fileName, folderId);
+        
+        // Il corpo deve contenere i byte del file: i form verrebbero già consumati dal container
+        if (contentType != null && (contentType.startsWith(MediaType.MULTIPART_FORM_DATA_VALUE)
+                || contentType.startsWith(MediaType.APPLICATION_FORM_URLENCODED_VALUE))) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+        }
+        
+        try {
+            User user = userService.getUserByUsername(authentication.getName());
+            StoredFile storedFile = fileService.uploadStream(request.getInputStream(), fileName, contentType, folderId, user);
+            return ResponseEntity.ok(fileService.convertToDto(storedFile));
+        } catch (IOException e) {
+            log.error("Errore durante l'upload del file in streaming: {}", e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        } catch (RuntimeException e) {
+            log.error("Errore durante l'upload del file in streaming: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     /**
      * Endpoint per scaricare un file.
      * 
+     * Supporta le richieste parziali tramite gli header Range e If-Range.
+     * 
      * @param fileId l'ID del file
+     * @param request la richiesta HTTP
      * @param authentication l'oggetto di autenticazione
-     * @return il file richiesto
+     * @return il file richiesto, intero o parziale
      */
     @GetMapping("/{fileId}/download")
-    public ResponseEntity<Resource> downloadFile(
+    public ResponseEntity<?> downloadFile(
             @PathVariable Long fileId,
+            HttpServletRequest request,
             Authentication authentication) {
         
         log.info("Richiesta di download file: {}", fileId);
@@ -77,12 +161,8 @@ public class FileController {
         try {
             User user = userService.getUserByUsername(authentication.getName());
             StoredFile file = fileService.getFile(fileId, user);
-            Resource resource = fileService.downloadFile(fileId, user);
             
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(file.getContentType()))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getOriginalFileName() + "\"")
-                    .body(resource);
+            return fileDownloadSupport.buildDownloadResponse(file, request);
         } catch (IOException e) {
             log.error("Errore durante il download del file: {}", e.getMessage());
             return ResponseEntity.internalServerError().build();
@@ -94,14 +174,17 @@ public class FileController {
 
     /**
      * Endpoint per ottenere i metadati di un file.
+     * Supporta le richieste condizionali tramite ETag debole.
      * 
      * @param fileId l'ID del file
+     * @param requestHeaders gli header della richiesta
      * @param authentication l'oggetto di autenticazione
      * @return i metadati del file
      */
     @GetMapping("/{fileId}")
     public ResponseEntity<FileResponseDto> getFile(
             @PathVariable Long fileId,
+            @RequestHeader HttpHeaders requestHeaders,
             Authentication authentication) {
         
         log.info("Richiesta di visualizzazione file: {}", fileId);
@@ -109,7 +192,14 @@ public class FileController {
         try {
             User user = userService.getUserByUsername(authentication.getName());
             StoredFile file = fileService.getFile(fileId, user);
-            return ResponseEntity.ok(fileService.convertToDto(file));
+            String etag = "W/\"file-" + file.getId() + "-" + file.getUpdatedAt().toString() + "\"";
+            if (ConditionalRequests.isNotModified(requestHeaders, etag, -1)) {
+                return ConditionalRequests.notModified(etag, ConditionalRequests.PRIVATE_CACHE);
+            }
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(ConditionalRequests.PRIVATE_CACHE)
+                    .body(fileService.convertToDto(file));
         } catch (RuntimeException e) {
             log.error("Errore durante la visualizzazione del file: {}", e.getMessage());
             return ResponseEntity.badRequest().build();
@@ -118,22 +208,56 @@ public class FileController {
 
     /**
      * Endpoint per ottenere l'elenco dei file in una cartella o al livello principale.
+     * L'elenco è paginato per chiave: se ci sono altri file, l'header X-Next-Cursor contiene
+     * il cursore da passare per la pagina successiva.
+     * L'ETag debole deriva dalla versione della cartella: se il client ha già l'elenco
+     * aggiornato la risposta è 304 Not Modified, senza caricare i file.
      * 
      * @param folderId l'ID della cartella (opzionale)
+     * @param sort il criterio di ordinamento: name, size o createdAt
+     * @param direction la direzione di ordinamento: asc o desc
+     * @param cursor il cursore della pagina precedente (opzionale)
+     * @param limit il numero massimo di file (opzionale)
+     * @param contentType il content type dei file, anche nella forma "image/*" (opzionale)
+     * @param createdAfter la data di creazione minima inclusa (opzionale)
+     * @param createdBefore la data di creazione massima esclusa (opzionale)
+     * @param requestHeaders gli header della richiesta
      * @param authentication l'oggetto di autenticazione
      * @return l'elenco dei file
      */
     @GetMapping
     public ResponseEntity<List<FileResponseDto>> getFiles(
             @RequestParam(value = "folderId", required = false) Long folderId,
+            @RequestParam(value = "sort", defaultValue = "name") String sort,
+            @RequestParam(value = "direction", defaultValue = "asc") String direction,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "contentType", required = false) String contentType,
+            @RequestParam(value = "createdAfter", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdAfter,
+            @RequestParam(value = "createdBefore", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdBefore,
+            @RequestHeader HttpHeaders requestHeaders,
             Authentication authentication) {
         
-        log.info("Richiesta di elenco file, cartella: {}", folderId);
+        log.info("Richiesta di elenco file, cartella: {}, ordinamento: {} {}", folderId, sort, direction);
         
         try {
             User user = userService.getUserByUsername(authentication.getName());
-            List<StoredFile> files = fileService.getUserFiles(user, folderId);
-            return ResponseEntity.ok(fileService.convertToDtoList(files));
+            String etag = listingVersionService.getListingETag("files", folderId, user);
+            if (ConditionalRequests.isNotModified(requestHeaders, etag, -1)) {
+                return ConditionalRequests.notModified(etag, ConditionalRequests.PRIVATE_CACHE);
+            }
+            ListingQuery query = ListingRequests.toQuery(
+                    sort, direction, cursor, limit, contentType, createdAfter, createdBefore);
+            KeysetPage<FileResponseDto> page = fileService.getUserFiles(user, folderId, query);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(ConditionalRequests.PRIVATE_CACHE);
+            if (page.getNextCursor() != null) {
+                response.header(ListingRequests.NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return response.body(page.getItems());
         } catch (RuntimeException e) {
             log.error("Errore durante l'elenco dei file: {}", e.getMessage());
             return ResponseEntity.badRequest().build();
@@ -0,0 +1,277 @@
+package com.springBoot.saveMe.controller;
+
+import com.springBoot.saveMe.model.entity.StoredFile;
+import com.springBoot.saveMe.model.enums.ContentEncoding;
+import com.springBoot.saveMe.service.FileStorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.catalina.Globals;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Costruisce le risposte HTTP per il download dei file, usato sia dai download
+ * autenticati che dai link pubblici.
+ * Gestisce le richieste parziali (Range e If-Range) rispondendo con 206 Partial Content,
+ * anche con più intervalli (multipart/byteranges), e con 416 per intervalli non soddisfacibili.
+ * I file interi sopra la soglia zero-copy vengono affidati al sendfile del container
+ * quando disponibile, altrimenti trasferiti con {@link java.nio.channels.FileChannel#transferTo}.
+ * L'ETag forte è ricavato dal digest del contenuto: le richieste condizionali
+ * ricevono 304 Not Modified prima di accedere al disco.
+ * I file salvati compressi vengono inviati così come sono, con Content-Encoding, ai client
+ * che accettano la codifica, e decompressi in streaming per gli altri; per questi file
+ * le richieste Range non sono supportate.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FileDownloadSupport {
+
+    private final FileStorageService fileStorageService;
+
+    @Value("${app.file.download.streaming-timeout-ms:3600000}")
+    private long streamingTimeoutMs;
+
+    /**
+     * Estende il timeout asincrono della richiesta corrente per una risposta in streaming
+     * (download, archivi), che può durare più del timeout di default delle altre richieste.
+     * Va invocato dal controller prima di restituire lo StreamingResponseBody.
+     *
+     * @param request la richiesta HTTP
+     */
+    public void applyStreamingTimeout(HttpServletRequest request) {
+        AsyncWebRequest asyncWebRequest = WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest();
+        if (asyncWebRequest != null) {
+            asyncWebRequest.setTimeout(streamingTimeoutMs);
+        }
+    }
+
+    /**
+     * Costruisce la risposta per il download di un file.
+     *
+     * @param file i metadati del file
+     * @param request la richiesta HTTP
+     * @return la risposta completa, parziale o 304 Not Modified
+     * @throws IOException se non è possibile leggere il file
+     */
+    public ResponseEntity<?> buildDownloadResponse(StoredFile file, HttpServletRequest request) throws IOException {
+        HttpHeaders requestHeaders = new ServletServerHttpRequest(request).getHeaders();
+        ContentEncoding contentEncoding = file.getContentEncoding() != null
+                ? file.getContentEncoding() : ContentEncoding.IDENTITY;
+        boolean encoded = contentEncoding != ContentEncoding.IDENTITY;
+        boolean serveEncoded = encoded && acceptsEncoding(requestHeaders, contentEncoding);
+        String etag = contentETag(file, serveEncoded ? contentEncoding : ContentEncoding.IDENTITY);
+        long lastModified = lastModified(file);
+        if (ConditionalRequests.isNotModified(requestHeaders, etag, lastModified)) {
+            if (encoded) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .cacheControl(ConditionalRequests.CONTENT_CACHE)
+                        .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                        .build();
+            }
+            return ConditionalRequests.notModified(etag, ConditionalRequests.CONTENT_CACHE);
+        }
+
+        Resource resource = fileStorageService.loadFileAsResource(file.getStoragePath());
+        long contentLength = resource.contentLength();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(file.getContentType()));
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename(file.getOriginalFileName(), StandardCharsets.UTF_8)
+                .build());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setETag(etag);
+        headers.setLastModified(lastModified);
+        headers.setCacheControl(ConditionalRequests.CONTENT_CACHE);
+
+        if (encoded) {
+            headers.set(HttpHeaders.ACCEPT_RANGES, "none");
+            headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+            boolean rangeRequested = requestHeaders.containsKey(HttpHeaders.RANGE);
+            if (serveEncoded) {
+                // I byte su disco sono già la rappresentazione richiesta
+                headers.set(HttpHeaders.CONTENT_ENCODING, contentEncoding.getToken());
+                return fullContent(file, resource, request, headers, contentLength, rangeRequested);
+            }
+            return decodedContent(file, contentEncoding, headers, request);
+        }
+
+        String rangeHeader = requestHeaders.getFirst(HttpHeaders.RANGE);
+        // Con If-Range non corrispondente si restituisce il file intero
+        if (rangeHeader == null || !isIfRangeSatisfied(requestHeaders, etag, lastModified)) {
+            return fullContent(file, resource, request, headers, contentLength, rangeHeader != null);
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            // Un header Range non valido viene ignorato
+            log.debug("Header Range ignorato: {}", rangeHeader);
+            return fullContent(file, resource, request, headers, contentLength, true);
+        }
+        if (ranges.isEmpty()) {
+            return fullContent(file, resource, request, headers, contentLength, true);
+        }
+
+        try {
+            List<ResourceRegion> regions = HttpRange.toResourceRegions(ranges, resource);
+            if (regions.size() == 1) {
+                return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers).body(regions.get(0));
+            }
+            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers).body(regions);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + contentLength)
+                    .build();
+        }
+    }
+
+    /**
+     * Verifica la condizione If-Range: l'intervallo viene servito solo se il validatore
+     * inviato dal client corrisponde alla versione corrente del file.
+     * Gli ETag vengono confrontati in modo forte: un ETag debole non soddisfa mai la condizione.
+     */
+    private boolean isIfRangeSatisfied(HttpHeaders requestHeaders, String etag, long lastModified) {
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return requestHeaders.getFirstDate(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Restituisce il file intero.
+     * In modalità zero-copy il contenuto viene affidato al sendfile del container, che lo invia
+     * dopo la scrittura degli header; se il container non lo supporta si usa transferTo.
+     * Con un header Range ignorato il file non può essere restituito come Resource,
+     * perché Spring MVC lo ritaglierebbe automaticamente ignorando If-Range.
+     */
+    private ResponseEntity<?> fullContent(StoredFile file, Resource resource, HttpServletRequest request,
+                                          HttpHeaders headers, long contentLength, boolean rangeRequested)
+            throws IOException {
+        if (fileStorageService.isZeroCopyEligible(contentLength)) {
+            Path path = fileStorageService.resolveLocalFile(file.getStoragePath());
+            if (Boolean.TRUE.equals(request.getAttribute(Globals.SENDFILE_SUPPORTED_ATTR))) {
+                request.setAttribute(Globals.SENDFILE_FILENAME_ATTR, path.toString());
+                request.setAttribute(Globals.SENDFILE_FILE_START_ATTR, 0L);
+                request.setAttribute(Globals.SENDFILE_FILE_END_ATTR, contentLength);
+                return ResponseEntity.ok().headers(headers).contentLength(contentLength).build();
+            }
+            applyStreamingTimeout(request);
+            StreamingResponseBody body = outputStream ->
+                    fileStorageService.transferTo(path, 0, contentLength, Channels.newChannel(outputStream));
+            return ResponseEntity.ok().headers(headers).contentLength(contentLength).body(body);
+        }
+
+        if (!rangeRequested) {
+            return ResponseEntity.ok().headers(headers).body(resource);
+        }
+        applyStreamingTimeout(request);
+        StreamingResponseBody body = outputStream -> {
+            try (InputStream inputStream = resource.getInputStream()) {
+                inputStream.transferTo(outputStream);
+            }
+        };
+        return ResponseEntity.ok().headers(headers).contentLength(contentLength).body(body);
+    }
+
+    /**
+     * Restituisce il contenuto originale di un file compresso, decomprimendolo in streaming.
+     */
+    private ResponseEntity<StreamingResponseBody> decodedContent(StoredFile file, ContentEncoding contentEncoding,
+                                                                 HttpHeaders headers, HttpServletRequest request) {
+        applyStreamingTimeout(request);
+        StreamingResponseBody body = outputStream -> {
+            try (InputStream inputStream = fileStorageService.openDecodedStream(file.getStoragePath(), contentEncoding)) {
+                inputStream.transferTo(outputStream);
+            }
+        };
+        return ResponseEntity.ok().headers(headers).contentLength(file.getSize()).body(body);
+    }
+
+    /**
+     * Verifica se il client accetta una codifica, secondo l'header Accept-Encoding
+     * (una codifica con q=0 è esplicitamente rifiutata).
+     */
+    private boolean acceptsEncoding(HttpHeaders requestHeaders, ContentEncoding contentEncoding) {
+        for (String value : requestHeaders.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String element : value.split(",")) {
+                String[] parts = element.trim().split(";");
+                String coding = parts[0].trim();
+                if (coding.equalsIgnoreCase(contentEncoding.getToken()) || coding.equals("*")) {
+                    return !isZeroQuality(parts);
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isZeroQuality(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2)) == 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * ETag forte del contenuto: il digest SHA-256, oppure l'id per i file
+     * caricati prima dell'introduzione del digest (il contenuto di un file non cambia).
+     * La rappresentazione compressa ha un ETag distinto da quella originale.
+     *
+     * @param file i metadati del file
+     * @param servedEncoding la codifica con cui il contenuto viene inviato
+     * @return l'ETag del contenuto
+     */
+    private String contentETag(StoredFile file, ContentEncoding servedEncoding) {
+        String tag = file.getContentDigest() != null ? file.getContentDigest() : "legacy-" + file.getId();
+        if (servedEncoding != ContentEncoding.IDENTITY) {
+            tag += "-" + servedEncoding.getToken();
+        }
+        return "\"" + tag + "\"";
+    }
+
+    /**
+     * Il contenuto di un file non cambia dopo l'upload: la data di creazione fa da data di ultima modifica.
+     */
+    private long lastModified(StoredFile file) {
+        return file.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
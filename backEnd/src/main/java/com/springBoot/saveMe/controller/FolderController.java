@@ -1,18 +1,34 @@
 package com.springBoot.saveMe.controller;
 
+import com.springBoot.saveMe.dto.folder.FolderContentsDto;
 import com.springBoot.saveMe.dto.folder.FolderRequestDto;
 import com.springBoot.saveMe.dto.folder.FolderResponseDto;
 import com.springBoot.saveMe.model.entity.Folder;
 import com.springBoot.saveMe.model.entity.User;
+import com.springBoot.saveMe.model.listing.FolderContents;
+import com.springBoot.saveMe.model.listing.KeysetPage;
+import com.springBoot.saveMe.model.listing.ListingQuery;
+import com.springBoot.saveMe.service.FolderArchiveService;
+import com.springBoot.saveMe.service.FolderContentsService;
 import com.springBoot.saveMe.service.FolderService;
+import com.springBoot.saveMe.service.FolderTreeService;
+import com.springBoot.saveMe.service.ListingVersionService;
 import com.springBoot.saveMe.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -27,6 +43,11 @@ public class FolderController {
 
     private final FolderService folderService;
     private final UserService userService;
+    private final ListingVersionService listingVersionService;
+    private final FolderArchiveService folderArchiveService;
+    private final FileDownloadSupport fileDownloadSupport;
+    private final FolderTreeService folderTreeService;
+    private final FolderContentsService folderContentsService;
 
     /**
      * Endpoint per creare una nuova cartella.
@@ -113,30 +134,219 @@ public class FolderController {
         }
     }
 
+    /**
+     * Endpoint per ottenere il contenuto di una cartella (o del livello principale, senza ID)
+     * in una sola richiesta: la prima pagina delle sottocartelle e dei file.
+     * I cursori restituiti sono validi anche per GET /api/folders e GET /api/files
+     * con lo stesso ordinamento, per proseguire ciascun elenco separatamente.
+     * 
+     * @param folderId l'ID della cartella (opzionale)
+     * @param sort il criterio di ordinamento: name, size o createdAt
+     * @param direction la direzione di ordinamento: asc o desc
+     * @param folderCursor il cursore della pagina precedente delle sottocartelle (opzionale)
+     * @param fileCursor il cursore della pagina precedente dei file (opzionale)
+     * @param limit il numero massimo di elementi per ciascun elenco (opzionale)
+     * @param contentType il content type dei file, anche nella forma "image/*" (opzionale)
+     * @param createdAfter la data di creazione minima inclusa (opzionale)
+     * @param createdBefore la data di creazione massima esclusa (opzionale)
+     * @param requestHeaders gli header della richiesta
+     * @param authentication l'oggetto di autenticazione
+     * @return le sottocartelle e i file della cartella
+     */
+    @GetMapping({"/contents", "/{folderId}/contents"})
+    public ResponseEntity<FolderContentsDto> getFolderContents(
+            @PathVariable(required = false) Long folderId,
+            @RequestParam(value = "sort", defaultValue = "name") String sort,
+            @RequestParam(value = "direction", defaultValue = "asc") String direction,
+            @RequestParam(value = "folderCursor", required = false) String folderCursor,
+            @RequestParam(value = "fileCursor", required = false) String fileCursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "contentType", required = false) String contentType,
+            @RequestParam(value = "createdAfter", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdAfter,
+            @RequestParam(value = "createdBefore", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdBefore,
+            @RequestHeader HttpHeaders requestHeaders,
+            Authentication authentication) {
+        
+        log.info("Richiesta di contenuto cartella: {}, ordinamento: {} {}", folderId, sort, direction);
+        
+        try {
+            User user = userService.getUserByUsername(authentication.getName());
+            ListingQuery folderQuery = ListingRequests.toQuery(
+                    sort, direction, folderCursor, limit, null, createdAfter, createdBefore);
+            ListingQuery fileQuery = ListingRequests.toQuery(
+                    sort, direction, fileCursor, limit, contentType, createdAfter, createdBefore);
+            FolderContents result = folderContentsService.getContents(folderId, user, folderQuery, fileQuery,
+                    etag -> ConditionalRequests.isNotModified(requestHeaders, etag, -1));
+            
+            if (result.getContents() == null) {
+                return ConditionalRequests.notModified(result.getEtag(), ConditionalRequests.PRIVATE_CACHE);
+            }
+            return ResponseEntity.ok()
+                    .eTag(result.getEtag())
+                    .cacheControl(ConditionalRequests.PRIVATE_CACHE)
+                    .body(result.getContents());
+        } catch (RuntimeException e) {
+            log.error("Errore durante il recupero del contenuto della cartella: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Endpoint per ottenere l'albero completo delle cartelle dell'utente con una sola richiesta.
+     * Ogni cartella riporta il numero di sottocartelle e di file diretti e la dimensione
+     * totale del suo sottoalbero; il JSON viene generato in streaming durante l'invio.
+     * 
+     * @param depth la profondità massima (opzionale, 0 per le sole cartelle di primo livello)
+     * @param request la richiesta HTTP
+     * @param authentication l'oggetto di autenticazione
+     * @return l'albero delle cartelle
+     */
+    @GetMapping("/tree")
+    public ResponseEntity<StreamingResponseBody> getFolderTree(
+            @RequestParam(value = "depth", required = false) Integer depth,
+            HttpServletRequest request,
+            Authentication authentication) {
+        
+        log.info("Richiesta di albero cartelle, profondità: {}", depth);
+        
+        if (depth != null && depth < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        try {
+            User user = userService.getUserByUsername(authentication.getName());
+            StreamingResponseBody body = outputStream -> folderTreeService.writeTree(user, depth, outputStream);
+            fileDownloadSupport.applyStreamingTimeout(request);
+            
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .cacheControl(ConditionalRequests.PRIVATE_CACHE)
+                    .body(body);
+        } catch (RuntimeException e) {
+            log.error("Errore durante il recupero dell'albero delle cartelle: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Endpoint per ottenere il percorso di una cartella (breadcrumb),
+     * dalla cartella di primo livello alla cartella stessa.
+     * 
+     * @param folderId l'ID della cartella
+     * @param authentication l'oggetto di autenticazione
+     * @return le cartelle del percorso
+     */
+    @GetMapping("/{folderId}/breadcrumb")
+    public ResponseEntity<List<FolderResponseDto>> getBreadcrumb(
+            @PathVariable Long folderId,
+            Authentication authentication) {
+        
+        log.info("Richiesta di percorso cartella: {}", folderId);
+        
+        try {
+            User user = userService.getUserByUsername(authentication.getName());
+            List<Folder> breadcrumb = folderService.getBreadcrumb(folderId, user);
+            return ResponseEntity.ok(folderService.convertToDtoList(breadcrumb));
+        } catch (RuntimeException e) {
+            log.error("Errore durante il recupero del percorso della cartella: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     /**
      * Endpoint per ottenere l'elenco delle cartelle di un utente, opzionalmente filtrate per cartella genitore.
+     * L'elenco è paginato per chiave: se ci sono altre cartelle, l'header X-Next-Cursor contiene
+     * il cursore da passare per la pagina successiva.
+     * L'ETag debole deriva dalla versione della cartella genitore: se il client ha già l'elenco
+     * aggiornato la risposta è 304 Not Modified, senza caricare le cartelle.
      * 
      * @param parentFolderId l'ID della cartella genitore (opzionale)
+     * @param sort il criterio di ordinamento: name, size (dimensione totale) o createdAt
+     * @param direction la direzione di ordinamento: asc o desc
+     * @param cursor il cursore della pagina precedente (opzionale)
+     * @param limit il numero massimo di cartelle (opzionale)
+     * @param createdAfter la data di creazione minima inclusa (opzionale)
+     * @param createdBefore la data di creazione massima esclusa (opzionale)
+     * @param requestHeaders gli header della richiesta
      * @param authentication l'oggetto di autenticazione
      * @return l'elenco delle cartelle
      */
     @GetMapping
     public ResponseEntity<List<FolderResponseDto>> getFolders(
             @RequestParam(value = "parentFolderId", required = false) Long parentFolderId,
+            @RequestParam(value = "sort", defaultValue = "name") String sort,
+            @RequestParam(value = "direction", defaultValue = "asc") String direction,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "createdAfter", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdAfter,
+            @RequestParam(value = "createdBefore", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdBefore,
+            @RequestHeader HttpHeaders requestHeaders,
             Authentication authentication) {
         
-        log.info("Richiesta di elenco cartelle, cartella genitore: {}", parentFolderId);
+        log.info("Richiesta di elenco cartelle, cartella genitore: {}, ordinamento: {} {}", parentFolderId, sort, direction);
         
         try {
             User user = userService.getUserByUsername(authentication.getName());
-            List<Folder> folders = folderService.getUserFolders(user, parentFolderId);
-            return ResponseEntity.ok(folderService.convertToDtoList(folders));
+            String etag = listingVersionService.getListingETag("folders", parentFolderId, user);
+            if (ConditionalRequests.isNotModified(requestHeaders, etag, -1)) {
+                return ConditionalRequests.notModified(etag, ConditionalRequests.PRIVATE_CACHE);
+            }
+            ListingQuery query = ListingRequests.toQuery(
+                    sort, direction, cursor, limit, null, createdAfter, createdBefore);
+            KeysetPage<FolderResponseDto> page = folderService.getUserFolders(user, parentFolderId, query);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(ConditionalRequests.PRIVATE_CACHE);
+            if (page.getNextCursor() != null) {
+                response.header(ListingRequests.NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return response.body(page.getItems());
         } catch (RuntimeException e) {
             log.error("Errore durante l'elenco delle cartelle: {}", e.getMessage());
             return ResponseEntity.badRequest().build();
         }
     }
 
+    /**
+     * Endpoint per scaricare una cartella e tutto il suo contenuto come archivio ZIP.
+     * L'archivio viene generato in streaming durante l'invio, senza file temporanei.
+     * 
+     * @param folderId l'ID della cartella
+     * @param request la richiesta HTTP
+     * @param authentication l'oggetto di autenticazione
+     * @return l'archivio ZIP della cartella
+     */
+    @GetMapping("/{folderId}/archive")
+    public ResponseEntity<StreamingResponseBody> downloadArchive(
+            @PathVariable Long folderId,
+            HttpServletRequest request,
+            Authentication authentication) {
+        
+        log.info("Richiesta di archivio cartella: {}", folderId);
+        
+        try {
+            User user = userService.getUserByUsername(authentication.getName());
+            Folder folder = folderService.getFolder(folderId, user);
+            StreamingResponseBody body = outputStream -> folderArchiveService.writeArchive(folder.getId(), outputStream);
+            fileDownloadSupport.applyStreamingTimeout(request);
+            
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                            .filename(folder.getName() + ".zip", StandardCharsets.UTF_8)
+                            .build()
+                            .toString())
+                    .body(body);
+        } catch (RuntimeException e) {
+            log.error("Errore durante la creazione dell'archivio della cartella: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     /**
      * Endpoint per eliminare una cartella.
      * 
@@ -0,0 +1,47 @@
+package com.springBoot.saveMe.controller;
+
+import com.springBoot.saveMe.model.enums.ListingSort;
+import com.springBoot.saveMe.model.listing.ListingQuery;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lettura dei parametri comuni agli elenchi paginati di file, cartelle e condivisioni.
+ * Il cursore della pagina successiva viene restituito nell'header X-Next-Cursor,
+ * così il corpo della risposta resta l'elenco degli elementi.
+ */
+final class ListingRequests {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private ListingRequests() {
+    }
+
+    /**
+     * Costruisce i parametri di una pagina a partire dai parametri della richiesta.
+     *
+     * @param sort il criterio di ordinamento ("name", "size" o "createdAt")
+     * @param direction la direzione ("asc" o "desc")
+     * @param cursor il cursore restituito dalla pagina precedente (può essere null)
+     * @param limit il numero massimo di elementi (null, senza cursore, per l'elenco completo)
+     * @param contentType il content type dei file, anche nella forma "tipo/*" (può essere null)
+     * @param createdAfter la data di creazione minima inclusa (può essere null)
+     * @param createdBefore la data di creazione massima esclusa (può essere null)
+     * @return i parametri della pagina
+     */
+    static ListingQuery toQuery(String sort, String direction, String cursor, Integer limit,
+                                String contentType, LocalDateTime createdAfter, LocalDateTime createdBefore) {
+        if (!"asc".equalsIgnoreCase(direction) && !"desc".equalsIgnoreCase(direction)) {
+            throw new RuntimeException("Direzione di ordinamento non valida: " + direction);
+        }
+        return ListingQuery.builder()
+                .sort(ListingSort.fromToken(sort))
+                .descending("desc".equalsIgnoreCase(direction))
+                .cursor(cursor)
+                .limit(limit)
+                .contentType(contentType)
+                .createdAfter(createdAfter)
+                .createdBefore(createdBefore)
+                .build();
+    }
+}
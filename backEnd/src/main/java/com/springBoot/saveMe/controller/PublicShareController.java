@@ -1,35 +1,48 @@
 package com.springBoot.saveMe.controller;
 
 import com.springBoot.saveMe.dto.file.FileResponseDto;
+import com.springBoot.saveMe.dto.folder.FolderContentsDto;
 import com.springBoot.saveMe.dto.folder.FolderResponseDto;
+import com.springBoot.saveMe.dto.share.SignedUrlDto;
 import com.springBoot.saveMe.model.entity.Folder;
-import com.springBoot.saveMe.model.entity.SharePermission;
 import com.springBoot.saveMe.model.entity.StoredFile;
 import com.springBoot.saveMe.model.enums.ResourceType;
+import com.springBoot.saveMe.model.listing.ListingQuery;
+import com.springBoot.saveMe.model.share.PublicLinkGrant;
+import com.springBoot.saveMe.model.share.SignedDownload;
 import com.springBoot.saveMe.repository.FolderRepository;
 import com.springBoot.saveMe.repository.StoredFileRepository;
 import com.springBoot.saveMe.service.FileService;
-import com.springBoot.saveMe.service.FileStorageService;
+import com.springBoot.saveMe.service.FolderArchiveService;
 import com.springBoot.saveMe.service.FolderService;
+import com.springBoot.saveMe.security.jwt.SignedUrlUtils;
 import com.springBoot.saveMe.service.PermissionService;
+import com.springBoot.saveMe.service.PublicShareService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.Optional;
 
 /**
  * Controller per gestire l'accesso alle risorse condivise pubblicamente.
- * Gestisce l'accesso ai file e alle cartelle tramite link pubblici.
+ * Gestisce l'accesso ai file e alle cartelle tramite link pubblici: un link a una cartella
+ * permette di sfogliarne il contenuto, scaricare i file e l'archivio dell'intero sottoalbero.
  */
 @RestController
 @RequestMapping("/public/share")
@@ -38,36 +51,43 @@ import java.util.Optional;
 public class PublicShareController {
 
     private final PermissionService permissionService;
-    private final FileStorageService fileStorageService;
     private final StoredFileRepository fileRepository;
     private final FolderRepository folderRepository;
     private final FileService fileService;
     private final FolderService folderService;
+    private final FileDownloadSupport fileDownloadSupport;
+    private final SignedUrlUtils signedUrlUtils;
+    private final PublicShareService publicShareService;
+    private final FolderArchiveService folderArchiveService;
 
     /**
      * Endpoint per accedere a una risorsa condivisa tramite token pubblico.
      * 
+     * Per i file supporta le richieste parziali tramite gli header Range e If-Range.
+     * 
      * @param token il token del link pubblico
+     * @param request la richiesta HTTP
      * @return i dati della risorsa condivisa o la risorsa stessa
      */
     @GetMapping("/{token}")
-    public ResponseEntity<?> accessSharedResource(@PathVariable String token) {
+    public ResponseEntity<?> accessSharedResource(@PathVariable String token,
+                                                  HttpServletRequest request) {
         log.info("Richiesta di accesso a risorsa condivisa con token: {}", token);
         
         try {
             // Verifica che il token sia valido e non scaduto
-            Optional<SharePermission> permissionOpt = permissionService.getValidPublicPermission(token);
+            Optional<PublicLinkGrant> permissionOpt = permissionService.resolvePublicLink(token);
             
             if (permissionOpt.isEmpty()) {
                 log.error("Token non valido o scaduto: {}", token);
                 return ResponseEntity.badRequest().body("Link non valido o scaduto");
             }
             
-            SharePermission permission = permissionOpt.get();
+            PublicLinkGrant permission = permissionOpt.get();
             
             // Gestisce in modo diverso in base al tipo di risorsa
             if (permission.getResourceType() == ResourceType.FILE) {
-                return handleFileAccess(permission);
+                return handleFileAccess(permission, request);
             } else if (permission.getResourceType() == ResourceType.FOLDER) {
                 return handleFolderAccess(permission);
             } else {
@@ -80,14 +100,227 @@ public class PublicShareController {
         }
     }
     
+    /**
+     * Endpoint per ottenere il contenuto di una cartella condivisa tramite link pubblico:
+     * la radice del link o una sua sottocartella a qualsiasi profondità.
+     * Le sottocartelle e i file sono paginati per chiave con cursori separati.
+     * 
+     * @param token il token del link pubblico
+     * @param folderId l'ID della sottocartella (opzionale, la radice del link se assente)
+     * @param sort il criterio di ordinamento: name, size o createdAt
+     * @param direction la direzione di ordinamento: asc o desc
+     * @param folderCursor il cursore della pagina precedente delle sottocartelle (opzionale)
+     * @param fileCursor il cursore della pagina precedente dei file (opzionale)
+     * @param limit il numero massimo di elementi per ciascun elenco (opzionale)
+     * @param contentType il content type dei file, anche nella forma "image/*" (opzionale)
+     * @param createdAfter la data di creazione minima inclusa (opzionale)
+     * @param createdBefore la data di creazione massima esclusa (opzionale)
+     * @return le sottocartelle e i file della cartella
+     */
+    @GetMapping({"/{token}/contents", "/{token}/folders/{folderId}/contents"})
+    public ResponseEntity<?> getSharedFolderContents(
+            @PathVariable String token,
+            @PathVariable(required = false) Long folderId,
+            @RequestParam(value = "sort", defaultValue = "name") String sort,
+            @RequestParam(value = "direction", defaultValue = "asc") String direction,
+            @RequestParam(value = "folderCursor", required = false) String folderCursor,
+            @RequestParam(value = "fileCursor", required = false) String fileCursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "contentType", required = false) String contentType,
+            @RequestParam(value = "createdAfter", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdAfter,
+            @RequestParam(value = "createdBefore", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdBefore) {
+        
+        log.info("Richiesta di contenuto cartella condivisa con token: {}, cartella: {}", token, folderId);
+        
+        Optional<PublicLinkGrant> permissionOpt = permissionService.resolvePublicLink(token);
+        if (permissionOpt.isEmpty()) {
+            log.error("Token non valido o scaduto: {}", token);
+            return ResponseEntity.badRequest().body("Link non valido o scaduto");
+        }
+        
+        try {
+            ListingQuery folderQuery = ListingRequests.toQuery(
+                    sort, direction, folderCursor, limit, null, createdAfter, createdBefore);
+            ListingQuery fileQuery = ListingRequests.toQuery(
+                    sort, direction, fileCursor, limit, contentType, createdAfter, createdBefore);
+            FolderContentsDto contents = publicShareService.getContents(
+                    permissionOpt.get(), folderId, folderQuery, fileQuery);
+            return ResponseEntity.ok(contents);
+        } catch (RuntimeException e) {
+            log.error("Errore durante il recupero del contenuto della cartella condivisa: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
+    /**
+     * Endpoint per scaricare un file contenuto, a qualsiasi profondità, in una cartella
+     * condivisa tramite link pubblico.
+     * 
+     * Supporta le richieste parziali tramite gli header Range e If-Range.
+     * 
+     * @param token il token del link pubblico
+     * @param fileId l'ID del file
+     * @param request la richiesta HTTP
+     * @return il file, intero o parziale
+     */
+    @GetMapping("/{token}/files/{fileId}")
+    public ResponseEntity<?> downloadSharedFile(@PathVariable String token,
+                                                @PathVariable Long fileId,
+                                                HttpServletRequest request) {
+        log.info("Richiesta di download file {} dalla cartella condivisa con token: {}", fileId, token);
+        
+        Optional<PublicLinkGrant> permissionOpt = permissionService.resolvePublicLink(token);
+        if (permissionOpt.isEmpty()) {
+            log.error("Token non valido o scaduto: {}", token);
+            return ResponseEntity.badRequest().body("Link non valido o scaduto");
+        }
+        
+        try {
+            StoredFile file = publicShareService.getFile(permissionOpt.get(), fileId);
+            return fileDownloadSupport.buildDownloadResponse(file, request);
+        } catch (RuntimeException e) {
+            log.error("Errore durante il download del file condiviso: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            log.error("Errore durante la lettura del file condiviso: {}", e.getMessage());
+            return ResponseEntity.internalServerError().body("Errore durante l'accesso alla risorsa condivisa");
+        }
+    }
+    
+    /**
+     * Endpoint per scaricare come archivio ZIP una cartella condivisa tramite link pubblico,
+     * la radice del link o una sua sottocartella.
+     * L'archivio viene generato in streaming durante l'invio, senza file temporanei.
+     * 
+     * @param token il token del link pubblico
+     * @param folderId l'ID della sottocartella (opzionale, la radice del link se assente)
+     * @param request la richiesta HTTP
+     * @return l'archivio ZIP della cartella
+     */
+    @GetMapping({"/{token}/archive", "/{token}/folders/{folderId}/archive"})
+    public ResponseEntity<?> downloadSharedArchive(@PathVariable String token,
+                                                   @PathVariable(required = false) Long folderId,
+                                                   HttpServletRequest request) {
+        log.info("Richiesta di archivio della cartella condivisa con token: {}, cartella: {}", token, folderId);
+        
+        Optional<PublicLinkGrant> permissionOpt = permissionService.resolvePublicLink(token);
+        if (permissionOpt.isEmpty()) {
+            log.error("Token non valido o scaduto: {}", token);
+            return ResponseEntity.badRequest().body("Link non valido o scaduto");
+        }
+        
+        try {
+            Folder folder = publicShareService.getFolder(permissionOpt.get(), folderId);
+            StreamingResponseBody body = outputStream -> folderArchiveService.writeArchive(folder.getId(), outputStream);
+            fileDownloadSupport.applyStreamingTimeout(request);
+            
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                            .filename(folder.getName() + ".zip", StandardCharsets.UTF_8)
+                            .build()
+                            .toString())
+                    .body(body);
+        } catch (RuntimeException e) {
+            log.error("Errore durante la creazione dell'archivio della cartella condivisa: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
+    /**
+     * Endpoint per generare un URL di download firmato e a tempo per un file condiviso:
+     * il file del link o, per un link a una cartella, un file del suo sottoalbero.
+     * L'URL scade dopo la durata configurata, e mai oltre la scadenza del link pubblico.
+     * 
+     * @param token il token del link pubblico
+     * @param fileId l'ID del file (obbligatorio per un link a una cartella)
+     * @return l'URL firmato e la sua scadenza
+     */
+    @GetMapping("/{token}/signed-url")
+    public ResponseEntity<?> createSignedUrl(@PathVariable String token,
+                                             @RequestParam(value = "fileId", required = false) Long fileId) {
+        log.info("Richiesta di URL firmato per il link pubblico: {}, file: {}", token, fileId);
+        
+        try {
+            Optional<PublicLinkGrant> permissionOpt = permissionService.resolvePublicLink(token);
+            if (permissionOpt.isEmpty()) {
+                log.error("Token non valido o scaduto: {}", token);
+                return ResponseEntity.badRequest().body("Link non valido o scaduto");
+            }
+            
+            PublicLinkGrant permission = permissionOpt.get();
+            StoredFile file = publicShareService.getFile(permission, fileId);
+            
+            return ResponseEntity.ok(signedUrl(permission, file));
+        } catch (RuntimeException e) {
+            log.error("Errore durante la generazione dell'URL firmato: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Errore durante la generazione dell'URL firmato: {}", e.getMessage());
+            return ResponseEntity.internalServerError().body("Errore durante la generazione dell'URL firmato");
+        }
+    }
+
+    /**
+     * Endpoint per scaricare un file tramite URL firmato.
+     * La firma contiene i metadati del file: il download non accede al database.
+     * 
+     * Per i file supporta le richieste parziali tramite gli header Range e If-Range.
+     * 
+     * @param signedToken il token firmato dell'URL
+     * @param request la richiesta HTTP
+     * @return il file, intero o parziale
+     */
+    @GetMapping("/signed/{signedToken}")
+    public ResponseEntity<?> downloadSigned(@PathVariable String signedToken,
+                                            HttpServletRequest request) {
+        try {
+            Optional<SignedDownload> downloadOpt = signedUrlUtils.verify(signedToken);
+            if (downloadOpt.isEmpty() || permissionService.isShareRevoked(downloadOpt.get().getShareId())) {
+                return ResponseEntity.badRequest().body("Link non valido o scaduto");
+            }
+            
+            return fileDownloadSupport.buildDownloadResponse(downloadOpt.get().toStoredFile(), request);
+        } catch (Exception e) {
+            log.error("Errore durante il download tramite URL firmato: {}", e.getMessage());
+            return ResponseEntity.internalServerError().body("Errore durante l'accesso alla risorsa condivisa");
+        }
+    }
+    
+    /**
+     * Genera l'URL firmato per un file autorizzato da un link pubblico.
+     * 
+     * @param permission il link pubblico
+     * @param file il file
+     * @return l'URL firmato e la sua scadenza
+     */
+    private SignedUrlDto signedUrl(PublicLinkGrant permission, StoredFile file) {
+        LocalDateTime expiresAt = LocalDateTime.now().plus(permissionService.getSignedUrlTtl());
+        if (permission.getExpiresAt() != null && permission.getExpiresAt().isBefore(expiresAt)) {
+            expiresAt = permission.getExpiresAt();
+        }
+        String signedToken = signedUrlUtils.sign(permission.getPermissionId(), file, expiresAt);
+        String url = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/public/share/signed/{signedToken}")
+                .buildAndExpand(signedToken)
+                .toUriString();
+        return SignedUrlDto.builder()
+                .url(url)
+                .expiresAt(expiresAt)
+                .build();
+    }
+    
     /**
      * Gestisce l'accesso a un file condiviso.
      * 
-     * @param permission il permesso di condivisione
-     * @return il file
+     * @param permission il link pubblico
+     * @param request la richiesta HTTP
+     * @return il file, intero o parziale
      * @throws IOException se si verifica un errore durante il recupero del file
      */
-    private ResponseEntity<?> handleFileAccess(SharePermission permission) throws IOException {
+    private ResponseEntity<?> handleFileAccess(PublicLinkGrant permission, HttpServletRequest request) throws IOException {
         Optional<StoredFile> fileOpt = fileRepository.findById(permission.getResourceId());
         
         if (fileOpt.isEmpty()) {
@@ -96,21 +329,17 @@ public class PublicShareController {
         }
         
         StoredFile file = fileOpt.get();
-        Resource resource = fileStorageService.loadFileAsResource(file.getFileName());
         
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(file.getContentType()))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getOriginalFileName() + "\"")
-                .body(resource);
+        return fileDownloadSupport.buildDownloadResponse(file, request);
     }
     
     /**
      * Gestisce l'accesso a una cartella condivisa.
      * 
-     * @param permission il permesso di condivisione
+     * @param permission il link pubblico
      * @return i metadati della cartella
      */
-    private ResponseEntity<?> handleFolderAccess(SharePermission permission) {
+    private ResponseEntity<?> handleFolderAccess(PublicLinkGrant permission) {
         Optional<Folder> folderOpt = folderRepository.findById(permission.getResourceId());
         
         if (folderOpt.isEmpty()) {
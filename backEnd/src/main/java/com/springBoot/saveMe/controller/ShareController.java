@@ -1,19 +1,25 @@
 package com.springBoot.saveMe.controller;
 
+import com.springBoot.saveMe.dto.share.IncomingShareDto;
 import com.springBoot.saveMe.dto.share.ShareRequestDto;
 import com.springBoot.saveMe.dto.share.ShareResponseDto;
 import com.springBoot.saveMe.model.entity.SharePermission;
 import com.springBoot.saveMe.model.entity.User;
+import com.springBoot.saveMe.model.enums.ResourceType;
+import com.springBoot.saveMe.model.listing.KeysetPage;
+import com.springBoot.saveMe.model.listing.ListingQuery;
 import com.springBoot.saveMe.service.ShareService;
 import com.springBoot.saveMe.service.UserService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -145,6 +151,49 @@ public class ShareController {
         }
     }
 
+    /**
+     * Endpoint per ottenere le risorse condivise con l'utente corrente, ordinate per data di condivisione.
+     * Il cursore della pagina successiva viene restituito nell'header X-Next-Cursor.
+     * 
+     * @param type il tipo di risorsa (FILE o FOLDER, opzionale)
+     * @param direction la direzione dell'ordinamento ("asc" o "desc")
+     * @param cursor il cursore della pagina precedente (opzionale)
+     * @param limit il numero massimo di elementi (opzionale)
+     * @param sharedAfter la data di condivisione minima inclusa (opzionale)
+     * @param sharedBefore la data di condivisione massima esclusa (opzionale)
+     * @param authentication l'oggetto di autenticazione
+     * @return la lista delle condivisioni ricevute
+     */
+    @GetMapping("/incoming")
+    public ResponseEntity<List<IncomingShareDto>> getIncomingShares(
+            @RequestParam(value = "type", required = false) ResourceType type,
+            @RequestParam(value = "direction", defaultValue = "desc") String direction,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "sharedAfter", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime sharedAfter,
+            @RequestParam(value = "sharedBefore", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime sharedBefore,
+            Authentication authentication) {
+        
+        log.info("Richiesta di elenco condivisioni ricevute, tipo: {}", type);
+        
+        try {
+            User user = userService.getUserByUsername(authentication.getName());
+            ListingQuery query = ListingRequests.toQuery(
+                    "createdAt", direction, cursor, limit, null, sharedAfter, sharedBefore);
+            KeysetPage<IncomingShareDto> page = shareService.getIncomingShares(user, type, query);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                response.header(ListingRequests.NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return response.body(page.getItems());
+        } catch (RuntimeException e) {
+            log.error("Errore durante l'elenco delle condivisioni ricevute: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     /**
      * Endpoint per eliminare una condivisione.
      * 
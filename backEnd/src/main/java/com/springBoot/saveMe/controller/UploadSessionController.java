@@ -0,0 +1,170 @@
+package com.springBoot.saveMe.controller;
+
+import com.springBoot.saveMe.dto.file.FileResponseDto;
+import com.springBoot.saveMe.dto.upload.UploadSessionRequestDto;
+import com.springBoot.saveMe.dto.upload.UploadSessionResponseDto;
+import com.springBoot.saveMe.model.entity.StoredFile;
+import com.springBoot.saveMe.model.entity.UploadSession;
+import com.springBoot.saveMe.model.entity.User;
+import com.springBoot.saveMe.service.FileService;
+import com.springBoot.saveMe.service.UploadSessionService;
+import com.springBoot.saveMe.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * Controller per gestire gli upload a blocchi riprendibili.
+ * Permette di aprire una sessione, inviare i blocchi in qualsiasi ordine e in parallelo,
+ * consultare gli intervalli già ricevuti e confermare l'upload.
+ */
+@RestController
+@RequestMapping("/api/files/uploads")
+@RequiredArgsConstructor
+@Slf4j
+public class UploadSessionController {
+
+    private final UploadSessionService uploadSessionService;
+    private final FileService fileService;
+    private final UserService userService;
+
+    /**
+     * Endpoint per aprire una sessione di upload.
+     * 
+     * @param sessionRequest i dati del file da caricare
+     * @param authentication l'oggetto di autenticazione
+     * @return lo stato della sessione creata
+     */
+    @PostMapping
+    public ResponseEntity<UploadSessionResponseDto> createSession(
+            @Valid @RequestBody UploadSessionRequestDto sessionRequest,
+            Authentication authentication) {
+        
+        log.info("Richiesta di apertura sessione di upload: {}, dimensione: {}", 
+                sessionRequest.getFileName(), sessionRequest.getTotalSize());
+        
+        try {
+            User user = userService.getUserByUsername(authentication.getName());
+            UploadSession session = uploadSessionService.createSession(sessionRequest, user);
+            return ResponseEntity.ok(uploadSessionService.convertToDto(session, Collections.emptySortedSet()));
+        } catch (RuntimeException e) {
+            log.error("Errore durante l'apertura della sessione di upload: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Endpoint per inviare un blocco. Il corpo della richiesta contiene i byte del blocco.
+     * 
+     * @param sessionId l'ID della sessione
+     * @param index l'indice del blocco (a partire da 0)
+     * @param request la richiesta HTTP
+     * @param authentication l'oggetto di autenticazione
+     * @return conferma della ricezione
+     */
+    @PutMapping("/{sessionId}/chunks/{index}")
+    public ResponseEntity<?> putChunk(
+            @PathVariable String sessionId,
+            @PathVariable int index,
+            HttpServletRequest request,
+            Authentication authentication) {
+        
+        log.debug("Ricezione blocco {} della sessione di upload: {}", index, sessionId);
+        
+        try {
+            User user = userService.getUserByUsername(authentication.getName());
+            uploadSessionService.putChunk(sessionId, index, request.getInputStream(), user);
+            return ResponseEntity.ok().build();
+        } catch (IOException e) {
+            log.error("Errore durante la ricezione del blocco: {}", e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        } catch (RuntimeException e) {
+            log.error("Errore durante la ricezione del blocco: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Endpoint per ottenere lo stato di una sessione e gli intervalli di byte già ricevuti.
+     * 
+     * @param sessionId l'ID della sessione
+     * @param authentication l'oggetto di autenticazione
+     * @return lo stato della sessione
+     */
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<UploadSessionResponseDto> getSession(
+            @PathVariable String sessionId,
+            Authentication authentication) {
+        
+        log.info("Richiesta di stato della sessione di upload: {}", sessionId);
+        
+        try {
+            User user = userService.getUserByUsername(authentication.getName());
+            return ResponseEntity.ok(uploadSessionService.getSessionStatus(sessionId, user));
+        } catch (IOException e) {
+            log.error("Errore durante la lettura della sessione di upload: {}", e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        } catch (RuntimeException e) {
+            log.error("Errore durante la lettura della sessione di upload: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Endpoint per confermare una sessione: assembla i blocchi e crea il file.
+     * 
+     * @param sessionId l'ID della sessione
+     * @param authentication l'oggetto di autenticazione
+     * @return i metadati del file creato
+     */
+    @PostMapping("/{sessionId}/commit")
+    public ResponseEntity<FileResponseDto> commitSession(
+            @PathVariable String sessionId,
+            Authentication authentication) {
+        
+        log.info("Richiesta di conferma della sessione di upload: {}", sessionId);
+        
+        try {
+            User user = userService.getUserByUsername(authentication.getName());
+            StoredFile storedFile = uploadSessionService.commitSession(sessionId, user);
+            return ResponseEntity.ok(fileService.convertToDto(storedFile));
+        } catch (IOException e) {
+            log.error("Errore durante la conferma della sessione di upload: {}", e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        } catch (RuntimeException e) {
+            log.error("Errore durante la conferma della sessione di upload: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Endpoint per annullare una sessione di upload.
+     * 
+     * @param sessionId l'ID della sessione
+     * @param authentication l'oggetto di autenticazione
+     * @return conferma dell'annullamento
+     */
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<?> abortSession(
+            @PathVariable String sessionId,
+            Authentication authentication) {
+        
+        log.info("Richiesta di annullamento della sessione di upload: {}", sessionId);
+        
+        try {
+            User user = userService.getUserByUsername(authentication.getName());
+            uploadSessionService.abortSession(sessionId, user);
+            return ResponseEntity.ok("Sessione di upload annullata");
+        } catch (RuntimeException e) {
+            log.error("Errore durante l'annullamento della sessione di upload: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.springBoot.saveMe.dto.file;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO per l'esito del caricamento di un singolo file in un upload multiplo.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchUploadResultDto {
+    
+    private String originalFileName;
+    private boolean success;
+    private FileResponseDto file;
+    private String error;
+}
@@ -0,0 +1,26 @@
+package com.springBoot.saveMe.dto.folder;
+
+import com.springBoot.saveMe.dto.file.FileResponseDto;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO per la risposta contenente il contenuto di una cartella: la prima pagina
+ * delle sottocartelle e dei file, con i cursori per le pagine successive.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FolderContentsDto {
+    
+    private FolderResponseDto folder;
+    private List<FolderResponseDto> folders;
+    private List<FileResponseDto> files;
+    private String nextFolderCursor;
+    private String nextFileCursor;
+}
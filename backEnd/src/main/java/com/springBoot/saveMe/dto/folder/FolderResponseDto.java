@@ -21,6 +21,12 @@ public class FolderResponseDto {
     private Long ownerId;
     private String ownerUsername;
     private Long parentFolderId;
+    private Long directSize;
+    private Long directFileCount;
+    private Long directFolderCount;
+    private Long totalSize;
+    private Long totalFileCount;
+    private Long totalFolderCount;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
\ No newline at end of file
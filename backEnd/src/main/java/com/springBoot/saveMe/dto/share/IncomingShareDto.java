@@ -0,0 +1,33 @@
+package com.springBoot.saveMe.dto.share;
+
+import com.springBoot.saveMe.model.enums.PermissionType;
+import com.springBoot.saveMe.model.enums.ResourceType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO per una risorsa condivisa con l'utente corrente.
+ * Per le cartelle la dimensione è quella totale del sottoalbero e il content type è null.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class IncomingShareDto {
+
+    private Long id;
+    private Long resourceId;
+    private ResourceType resourceType;
+    private String resourceName;
+    private String contentType;
+    private Long size;
+    private Long ownerId;
+    private String ownerUsername;
+    private PermissionType permissionType;
+    private LocalDateTime expiresAt;
+    private LocalDateTime createdAt;
+}
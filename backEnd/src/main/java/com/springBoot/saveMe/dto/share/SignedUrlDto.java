@@ -0,0 +1,21 @@
+package com.springBoot.saveMe.dto.share;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO per un URL di download firmato e a tempo.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SignedUrlDto {
+
+    private String url;
+    private LocalDateTime expiresAt;
+}
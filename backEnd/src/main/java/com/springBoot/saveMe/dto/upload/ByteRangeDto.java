@@ -0,0 +1,17 @@
+package com.springBoot.saveMe.dto.upload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO che rappresenta un intervallo di byte, con estremi inclusi.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ByteRangeDto {
+
+    private long start;
+    private long end;
+}
@@ -0,0 +1,34 @@
+package com.springBoot.saveMe.dto.upload;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO per la richiesta di apertura di una sessione di upload a blocchi.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadSessionRequestDto {
+
+    @NotBlank(message = "Il nome del file è obbligatorio")
+    @Size(max = 255, message = "Il nome del file non può superare i 255 caratteri")
+    private String fileName;
+    
+    private String contentType;
+    
+    @NotNull(message = "La dimensione del file è obbligatoria")
+    @PositiveOrZero(message = "La dimensione del file non può essere negativa")
+    private Long totalSize;
+    
+    @Positive(message = "La dimensione dei blocchi deve essere positiva")
+    private Integer chunkSize;
+    
+    private Long folderId;
+}
@@ -0,0 +1,30 @@
+package com.springBoot.saveMe.dto.upload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO per la risposta contenente lo stato di una sessione di upload a blocchi.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadSessionResponseDto {
+
+    private String id;
+    private String fileName;
+    private Long folderId;
+    private long totalSize;
+    private int chunkSize;
+    private int chunkCount;
+    private List<Integer> missingChunks;
+    private List<ByteRangeDto> receivedRanges;
+    private long receivedBytes;
+    private LocalDateTime expiresAt;
+}
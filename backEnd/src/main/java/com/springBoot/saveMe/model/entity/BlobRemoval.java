@@ -0,0 +1,41 @@
+package com.springBoot.saveMe.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entità che rappresenta un contenuto in attesa di essere rimosso dal disco.
+ * Le righe vengono create dalle eliminazioni massive, nella stessa transazione
+ * che elimina i file, e smaltite in background.
+ */
+@Entity
+@Table(name = "blob_removals")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BlobRemoval {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String storagePath;
+
+    @Column(length = 64)
+    private String contentDigest;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,45 @@
+package com.springBoot.saveMe.model.entity;
+
+import com.springBoot.saveMe.model.enums.ContentEncoding;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entità che rappresenta un blob deduplicato nello storage content-addressed.
+ * Il blob è identificato dal digest SHA-256 del contenuto e tiene il conto
+ * dei file che lo referenziano: viene rimosso dal disco solo quando il
+ * conteggio arriva a zero. La codifica su disco è fissata alla creazione del blob.
+ */
+@Entity
+@Table(name = "blobs")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContentBlob {
+
+    @Id
+    @Column(length = 64)
+    private String digest;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Column(nullable = false)
+    private Long physicalSize;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private ContentEncoding contentEncoding;
+
+    @Column(nullable = false)
+    private Integer refCount;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
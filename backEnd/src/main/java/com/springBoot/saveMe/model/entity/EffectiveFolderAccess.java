@@ -0,0 +1,47 @@
+package com.springBoot.saveMe.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Entità che rappresenta l'accesso effettivo di un utente a una cartella,
+ * ereditato dalla condivisione della cartella stessa o di una sua antenata.
+ * Le righe sono mantenute dal database con aggiornamenti massivi sul sottoalbero.
+ */
+@Entity
+@Table(name = "effective_folder_access")
+@IdClass(EffectiveFolderAccess.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EffectiveFolderAccess {
+
+    @Id
+    private Long userId;
+
+    @Id
+    private Long folderId;
+
+    /**
+     * Numero di condivisioni che coprono la cartella.
+     */
+    @Column(nullable = false)
+    private Integer grants;
+
+    /**
+     * Chiave composta: utente e cartella.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long userId;
+        private Long folderId;
+    }
+}
@@ -42,6 +42,49 @@ public class Folder {
     @Column(nullable = false)
     private LocalDateTime updatedAt;
 
+    /**
+     * Versione del contenuto diretto della cartella (file e sottocartelle).
+     * È gestita solo tramite aggiornamenti diretti nel database, mai scritta dall'entità.
+     */
+    @Column(insertable = false, updatable = false)
+    private Long contentVersion;
+
+    /**
+     * Percorso materializzato della cartella: gli ID degli antenati e della cartella stessa,
+     * separati e chiusi da '/' (ad esempio "/1/5/9/").
+     * È gestito solo tramite aggiornamenti diretti nel database, mai scritto dall'entità.
+     */
+    @Column(length = 2048, insertable = false, updatable = false)
+    private String path;
+
+    /**
+     * Contatori aggregati del contenuto diretto e dell'intero sottoalbero (cartella esclusa).
+     * Come la versione, sono gestiti solo tramite aggiornamenti diretti nel database.
+     */
+    @Builder.Default
+    @Column(insertable = false, updatable = false)
+    private Long directSize = 0L;
+
+    @Builder.Default
+    @Column(insertable = false, updatable = false)
+    private Long directFileCount = 0L;
+
+    @Builder.Default
+    @Column(insertable = false, updatable = false)
+    private Long directFolderCount = 0L;
+
+    @Builder.Default
+    @Column(insertable = false, updatable = false)
+    private Long totalSize = 0L;
+
+    @Builder.Default
+    @Column(insertable = false, updatable = false)
+    private Long totalFileCount = 0L;
+
+    @Builder.Default
+    @Column(insertable = false, updatable = false)
+    private Long totalFolderCount = 0L;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
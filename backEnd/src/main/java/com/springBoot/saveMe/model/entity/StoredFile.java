@@ -1,5 +1,6 @@
 package com.springBoot.saveMe.model.entity;
 
+import com.springBoot.saveMe.model.enums.ContentEncoding;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -22,7 +23,8 @@ import java.time.LocalDateTime;
 public class StoredFile {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stored_files_seq")
+    @SequenceGenerator(name = "stored_files_seq", sequenceName = "stored_files_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false)
@@ -37,9 +39,19 @@ public class StoredFile {
     @Column(nullable = false)
     private Long size;
     
+    @Column(nullable = false)
+    private Long physicalSize;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private ContentEncoding contentEncoding;
+    
     @Column(nullable = false)
     private String storagePath;
     
+    @Column(length = 64)
+    private String contentDigest;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id", nullable = false)
     private User owner;
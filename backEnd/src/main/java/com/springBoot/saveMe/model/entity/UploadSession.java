@@ -0,0 +1,84 @@
+package com.springBoot.saveMe.model.entity;
+
+import com.springBoot.saveMe.model.enums.UploadSessionStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entità che rappresenta una sessione di upload a blocchi.
+ * Il file viene inviato in blocchi numerati di dimensione fissa, in qualsiasi ordine
+ * e anche in parallelo; al commit i blocchi vengono assemblati in un unico blob.
+ * Le sessioni abbandonate scadono dopo un periodo di inattività.
+ */
+@Entity
+@Table(name = "upload_sessions")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "owner_id", nullable = false)
+    private User owner;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "folder_id")
+    private Folder folder;
+
+    @Column(nullable = false)
+    private String fileName;
+
+    private String contentType;
+
+    @Column(nullable = false)
+    private Long totalSize;
+
+    @Column(nullable = false)
+    private Integer chunkSize;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private UploadSessionStatus status;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    /**
+     * Calcola il numero di blocchi in cui è suddiviso il file.
+     *
+     * @return il numero di blocchi
+     */
+    public int getChunkCount() {
+        return (int) ((totalSize + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * Calcola la lunghezza attesa di un blocco: tutti i blocchi hanno dimensione
+     * chunkSize tranne l'ultimo, che contiene i byte rimanenti.
+     *
+     * @param index l'indice del blocco
+     * @return la lunghezza del blocco in byte
+     */
+    public long getChunkLength(int index) {
+        long start = (long) index * chunkSize;
+        return Math.min(chunkSize, totalSize - start);
+    }
+}
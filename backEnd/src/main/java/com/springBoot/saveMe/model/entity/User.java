@@ -41,4 +41,11 @@ public class User {
             inverseJoinColumns = @JoinColumn(name = "role_id")
     )
     private Set<Role> roles = new HashSet<>();
+
+    /**
+     * Versione del contenuto del livello principale dell'utente (file e cartelle senza cartella genitore).
+     * È gestita solo tramite aggiornamenti diretti nel database, mai scritta dall'entità.
+     */
+    @Column(insertable = false, updatable = false)
+    private Long rootContentVersion;
 }
\ No newline at end of file
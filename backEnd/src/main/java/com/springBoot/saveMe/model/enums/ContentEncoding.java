@@ -0,0 +1,26 @@
+package com.springBoot.saveMe.model.enums;
+
+/**
+ * Enumerazione che rappresenta la codifica con cui un contenuto è salvato su disco.
+ * IDENTITY indica il contenuto originale, GZIP il contenuto compresso: il valore
+ * coincide con il content-coding HTTP usato per servirlo senza decomprimerlo.
+ */
+public enum ContentEncoding {
+    IDENTITY("identity"),
+    GZIP("gzip");
+
+    private final String token;
+
+    ContentEncoding(String token) {
+        this.token = token;
+    }
+
+    /**
+     * Restituisce il content-coding HTTP corrispondente.
+     *
+     * @return il valore per l'header Content-Encoding
+     */
+    public String getToken() {
+        return token;
+    }
+}
@@ -0,0 +1,41 @@
+package com.springBoot.saveMe.model.enums;
+
+/**
+ * Enumerazione che rappresenta il criterio di ordinamento degli elenchi di file e cartelle.
+ * Il token è il valore accettato dal parametro "sort" delle richieste.
+ */
+public enum ListingSort {
+    NAME("name"),
+    SIZE("size"),
+    CREATED_AT("createdAt");
+
+    private final String token;
+
+    ListingSort(String token) {
+        this.token = token;
+    }
+
+    /**
+     * Restituisce il valore del parametro di richiesta corrispondente.
+     *
+     * @return il token dell'ordinamento
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * Trova l'ordinamento corrispondente a un parametro di richiesta.
+     *
+     * @param token il valore del parametro
+     * @return l'ordinamento
+     */
+    public static ListingSort fromToken(String token) {
+        for (ListingSort sort : values()) {
+            if (sort.token.equalsIgnoreCase(token)) {
+                return sort;
+            }
+        }
+        throw new RuntimeException("Ordinamento non valido: " + token);
+    }
+}
@@ -0,0 +1,11 @@
+package com.springBoot.saveMe.model.enums;
+
+/**
+ * Enumerazione che rappresenta l'organizzazione dei blob nella directory di upload.
+ * FLAT salva tutti i file nella stessa directory, SHARDED li distribuisce
+ * in sottodirectory a due livelli ricavate dal prefisso dell'hash (ab/cd/nome).
+ */
+public enum StorageLayout {
+    FLAT,
+    SHARDED
+}
@@ -0,0 +1,11 @@
+package com.springBoot.saveMe.model.enums;
+
+/**
+ * Enumerazione che rappresenta le modalità di salvataggio dei file su disco.
+ * UNIQUE salva ogni upload in un file distinto, CONTENT_ADDRESSED deduplica
+ * i contenuti identici indicizzandoli per digest SHA-256.
+ */
+public enum StorageMode {
+    UNIQUE,
+    CONTENT_ADDRESSED
+}
@@ -0,0 +1,9 @@
+package com.springBoot.saveMe.model.enums;
+
+/**
+ * Enumerazione che rappresenta lo stato di una sessione di upload a blocchi.
+ */
+public enum UploadSessionStatus {
+    OPEN,
+    COMMITTING
+}
@@ -0,0 +1,15 @@
+package com.springBoot.saveMe.model.listing;
+
+import com.springBoot.saveMe.dto.folder.FolderContentsDto;
+import lombok.Value;
+
+/**
+ * Contenuto di una cartella con il suo ETag.
+ * Il contenuto è null se la versione in possesso del client è ancora valida.
+ */
+@Value
+public class FolderContents {
+
+    String etag;
+    FolderContentsDto contents;
+}
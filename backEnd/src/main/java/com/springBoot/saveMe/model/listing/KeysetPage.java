@@ -0,0 +1,16 @@
+package com.springBoot.saveMe.model.listing;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Pagina di un elenco ottenuta con paginazione per chiave.
+ * Il cursore identifica l'ultimo elemento restituito ed è null quando l'elenco è terminato.
+ */
+@Value
+public class KeysetPage<T> {
+
+    List<T> items;
+    String nextCursor;
+}
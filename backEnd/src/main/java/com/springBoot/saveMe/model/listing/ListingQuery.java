@@ -0,0 +1,25 @@
+package com.springBoot.saveMe.model.listing;
+
+import com.springBoot.saveMe.model.enums.ListingSort;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Parametri di una pagina di un elenco di file o cartelle: ordinamento, filtri
+ * e cursore della pagina precedente. I filtri non applicabili al tipo di elenco vengono ignorati.
+ */
+@Value
+@Builder
+public class ListingQuery {
+
+    @Builder.Default
+    ListingSort sort = ListingSort.NAME;
+    boolean descending;
+    String cursor;
+    Integer limit;
+    String contentType;
+    LocalDateTime createdAfter;
+    LocalDateTime createdBefore;
+}
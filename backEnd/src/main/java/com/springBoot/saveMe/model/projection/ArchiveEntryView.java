@@ -0,0 +1,23 @@
+package com.springBoot.saveMe.model.projection;
+
+/**
+ * File di una cartella usato per costruire un archivio ZIP.
+ * Le righe vengono lette a blocchi, in ordine di nome e id.
+ */
+public interface ArchiveEntryView {
+
+    Long getId();
+
+    String getOriginalFileName();
+
+    String getContentType();
+
+    String getStoragePath();
+
+    String getContentEncoding();
+
+    /**
+     * @return la data di creazione del file come millisecondi dell'ora locale letta come UTC
+     */
+    Long getCreatedAtMillis();
+}
@@ -0,0 +1,23 @@
+package com.springBoot.saveMe.model.projection;
+
+/**
+ * Cartella del sottoalbero usato per costruire un archivio ZIP.
+ * Le righe vengono lette a blocchi in ordine di percorso materializzato:
+ * ogni cartella segue la sua cartella genitore.
+ */
+public interface ArchiveFolderView {
+
+    Long getId();
+
+    String getName();
+
+    /**
+     * @return il percorso materializzato degli id, come "/1/5/"
+     */
+    String getPath();
+
+    /**
+     * @return il numero di file contenuti direttamente nella cartella
+     */
+    Long getDirectFileCount();
+}
@@ -0,0 +1,14 @@
+package com.springBoot.saveMe.model.projection;
+
+/**
+ * Percorso materializzato di una cartella, letto dopo averne bloccato la riga.
+ */
+public interface FolderPathView {
+
+    Long getId();
+
+    /**
+     * @return il percorso materializzato degli id, come "/1/5/"
+     */
+    String getPath();
+}
@@ -0,0 +1,35 @@
+package com.springBoot.saveMe.model.projection;
+
+/**
+ * Riga dell'albero delle cartelle di un utente.
+ * Le righe sono ordinate per percorso: ogni cartella segue la sua cartella genitore
+ * e precede le cartelle successive dello stesso livello (visita in profondità).
+ */
+public interface FolderTreeNodeView {
+
+    Long getId();
+
+    String getName();
+
+    Long getParentFolderId();
+
+    /**
+     * @return il percorso materializzato degli id, chiave dei blocchi di lettura
+     */
+    String getPath();
+
+    /**
+     * @return il numero di sottocartelle dirette
+     */
+    Long getFolderCount();
+
+    /**
+     * @return il numero di file contenuti direttamente nella cartella
+     */
+    Long getFileCount();
+
+    /**
+     * @return la dimensione totale dei file della cartella e di tutte le sue sottocartelle
+     */
+    Long getTotalSize();
+}
@@ -0,0 +1,11 @@
+package com.springBoot.saveMe.model.projection;
+
+/**
+ * Token di un link pubblico ancora valido, con l'id del permesso per la lettura a blocchi.
+ */
+public interface PublicTokenView {
+
+    Long getId();
+
+    String getPublicLinkToken();
+}
@@ -0,0 +1,16 @@
+package com.springBoot.saveMe.model.projection;
+
+/**
+ * Condivisione scaduta eliminata dal job di pulizia: i dati necessari per aggiornare
+ * l'indice degli accessi effettivi e le cache.
+ */
+public interface PurgedShareView {
+
+    Long getResourceId();
+
+    String getResourceType();
+
+    Long getSharedWithUserId();
+
+    String getPublicLinkToken();
+}
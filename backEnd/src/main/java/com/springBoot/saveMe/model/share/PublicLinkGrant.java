@@ -0,0 +1,40 @@
+package com.springBoot.saveMe.model.share;
+
+import com.springBoot.saveMe.model.entity.SharePermission;
+import com.springBoot.saveMe.model.enums.PermissionType;
+import com.springBoot.saveMe.model.enums.ResourceType;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Istantanea immutabile di un link pubblico valido: contiene solo i dati necessari
+ * per servire la risorsa e può essere conservata in cache al posto dell'entità.
+ */
+@Value
+@Builder
+public class PublicLinkGrant {
+
+    Long permissionId;
+    Long resourceId;
+    ResourceType resourceType;
+    PermissionType permissionType;
+    LocalDateTime expiresAt;
+
+    /**
+     * Crea l'istantanea di un permesso di condivisione.
+     *
+     * @param permission il permesso di condivisione
+     * @return l'istantanea del link pubblico
+     */
+    public static PublicLinkGrant of(SharePermission permission) {
+        return PublicLinkGrant.builder()
+                .permissionId(permission.getId())
+                .resourceId(permission.getResourceId())
+                .resourceType(permission.getResourceType())
+                .permissionType(permission.getPermissionType())
+                .expiresAt(permission.getExpiresAt())
+                .build();
+    }
+}
@@ -0,0 +1,45 @@
+package com.springBoot.saveMe.model.share;
+
+import com.springBoot.saveMe.model.entity.StoredFile;
+import com.springBoot.saveMe.model.enums.ContentEncoding;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Contenuto verificato di un URL di download firmato: la condivisione da cui è stato
+ * generato e i metadati del file necessari per servirlo senza accedere al database.
+ */
+@Value
+@Builder
+public class SignedDownload {
+
+    Long shareId;
+    Long fileId;
+    String storagePath;
+    String contentType;
+    String originalFileName;
+    long size;
+    ContentEncoding contentEncoding;
+    String contentDigest;
+    LocalDateTime createdAt;
+
+    /**
+     * Ricostruisce i metadati del file (non gestiti da JPA) per la risposta di download.
+     *
+     * @return il file con i soli campi usati dal download
+     */
+    public StoredFile toStoredFile() {
+        return StoredFile.builder()
+                .id(fileId)
+                .storagePath(storagePath)
+                .contentType(contentType)
+                .originalFileName(originalFileName)
+                .size(size)
+                .contentEncoding(contentEncoding)
+                .contentDigest(contentDigest)
+                .createdAt(createdAt)
+                .build();
+    }
+}
@@ -0,0 +1,26 @@
+package com.springBoot.saveMe.model.storage;
+
+import com.springBoot.saveMe.model.enums.ContentEncoding;
+import lombok.Builder;
+import lombok.Value;
+
+import java.nio.file.Path;
+
+/**
+ * Contenuto scritto in un file temporaneo e non ancora registrato nello storage.
+ * Dimensione, digest SHA-256 e content type vengono calcolati durante
+ * la scrittura, in un solo passaggio sul flusso di dati; se il content type lo prevede
+ * il contenuto viene compresso mentre viene scritto.
+ */
+@Value
+@Builder
+public class StagedBlob {
+
+    Path tempFile;
+    String originalFileName;
+    String digest;
+    long size;
+    long physicalSize;
+    ContentEncoding contentEncoding;
+    String contentType;
+}
@@ -0,0 +1,23 @@
+package com.springBoot.saveMe.model.storage;
+
+import com.springBoot.saveMe.model.enums.ContentEncoding;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Risultato del salvataggio di un contenuto nello storage.
+ * Contiene il nome del blob, il suo percorso relativo secondo il layout corrente,
+ * il digest SHA-256 calcolato durante la scrittura, la dimensione logica e quella
+ * fisica in byte e la codifica con cui il contenuto è salvato su disco.
+ */
+@Value
+@Builder
+public class StoredBlob {
+
+    String fileName;
+    String storagePath;
+    String digest;
+    long size;
+    long physicalSize;
+    ContentEncoding contentEncoding;
+}
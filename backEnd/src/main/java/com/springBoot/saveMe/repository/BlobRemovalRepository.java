@@ -0,0 +1,41 @@
+package com.springBoot.saveMe.repository;
+
+import com.springBoot.saveMe.model.entity.BlobRemoval;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository per la coda dei contenuti da rimuovere dal disco.
+ */
+public interface BlobRemovalRepository extends JpaRepository<BlobRemoval, Long> {
+
+    /**
+     * Accoda i contenuti di tutti i file contenuti nelle cartelle indicate,
+     * con un solo INSERT ... SELECT.
+     * 
+     * @param folderIds gli id delle cartelle
+     * @return il numero di contenuti accodati
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO blob_removals (storage_path, content_digest, created_at) " +
+                   "SELECT DISTINCT s.storage_path, s.content_digest, now() FROM stored_files s " +
+                   "WHERE s.folder_id IN (:folderIds)", nativeQuery = true)
+    int enqueueFilesInFolders(@Param("folderIds") Collection<Long> folderIds);
+
+    /**
+     * Trova le prime richieste di rimozione in ordine di inserimento.
+     * 
+     * @param pageable la dimensione del blocco
+     * @return una lista di richieste di rimozione
+     */
+    @Query("SELECT r FROM BlobRemoval r ORDER BY r.id")
+    List<BlobRemoval> findOldest(Pageable pageable);
+}
@@ -0,0 +1,92 @@
+package com.springBoot.saveMe.repository;
+
+import com.springBoot.saveMe.model.entity.ContentBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+
+/**
+ * Repository per l'accesso e la manipolazione dei blob content-addressed.
+ */
+public interface ContentBlobRepository extends JpaRepository<ContentBlob, String> {
+
+    /**
+     * Acquisisce il lock consultivo del digest, rilasciato al termine della transazione corrente.
+     * Upload e rimozioni dello stesso contenuto lo acquisiscono prima di toccare la riga del blob,
+     * così il file su disco non può essere rimosso mentre un upload concorrente lo sta registrando,
+     * anche quando la riga non esiste ancora.
+     *
+     * @param digest il digest del blob
+     * @return sempre 1
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(1, hashtext(:digest))", nativeQuery = true)
+    Integer lockDigest(@Param("digest") String digest);
+
+    /**
+     * Registra un nuovo riferimento a un blob, creandolo se non esiste.
+     * L'upsert blocca la riga del blob fino al commit, serializzando
+     * gli upload concorrenti dello stesso contenuto con le rimozioni.
+     *
+     * Un blob esistente mantiene la dimensione fisica e la codifica con cui è stato creato.
+     *
+     * @param digest il digest SHA-256 del contenuto
+     * @param size la dimensione logica del contenuto in byte
+     * @param physicalSize la dimensione su disco in byte
+     * @param contentEncoding la codifica su disco (nome della costante ContentEncoding)
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO blobs (digest, size, physical_size, content_encoding, ref_count, created_at) " +
+                   "VALUES (:digest, :size, :physicalSize, :contentEncoding, 1, now()) " +
+                   "ON CONFLICT (digest) DO UPDATE SET ref_count = blobs.ref_count + 1", nativeQuery = true)
+    void incrementReference(@Param("digest") String digest, @Param("size") long size,
+                            @Param("physicalSize") long physicalSize, @Param("contentEncoding") String contentEncoding);
+
+    /**
+     * Rimuove un riferimento a un blob.
+     *
+     * @param digest il digest del blob
+     * @return il numero di righe aggiornate (0 se il blob non è tracciato)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ContentBlob b SET b.refCount = b.refCount - 1 WHERE b.digest = :digest")
+    int decrementReference(@Param("digest") String digest);
+
+    /**
+     * Rimuove in un solo aggiornamento i riferimenti dei file contenuti nelle cartelle indicate,
+     * raggruppati per digest. Vengono considerati solo i file content-addressed,
+     * il cui nome su disco coincide con il digest del contenuto.
+     *
+     * @param folderIds gli id delle cartelle
+     * @return il numero di blob aggiornati
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE blobs b SET ref_count = b.ref_count - r.refs " +
+                   "FROM (SELECT s.content_digest, COUNT(*) AS refs FROM stored_files s " +
+                   "      WHERE s.folder_id IN (:folderIds) AND s.content_digest IS NOT NULL " +
+                   "        AND (s.storage_path = s.content_digest OR s.storage_path LIKE '%/' || s.content_digest) " +
+                   "      GROUP BY s.content_digest) r " +
+                   "WHERE b.digest = r.content_digest", nativeQuery = true)
+    int decrementReferencesInFolders(@Param("folderIds") Collection<Long> folderIds);
+
+    /**
+     * Elimina un blob che non ha più riferimenti.
+     * Deve essere eseguito nella transazione che detiene il lock del digest,
+     * insieme alla rimozione del file dal disco.
+     *
+     * @param digest il digest del blob
+     * @return il numero di righe eliminate
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query("DELETE FROM ContentBlob b WHERE b.digest = :digest AND b.refCount <= 0")
+    int deleteIfUnreferenced(@Param("digest") String digest);
+}
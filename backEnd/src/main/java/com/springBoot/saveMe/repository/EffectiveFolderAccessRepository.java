@@ -0,0 +1,128 @@
+package com.springBoot.saveMe.repository;
+
+import com.springBoot.saveMe.model.entity.EffectiveFolderAccess;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Repository per l'indice degli accessi effettivi alle cartelle condivise.
+ */
+public interface EffectiveFolderAccessRepository extends JpaRepository<EffectiveFolderAccess, EffectiveFolderAccess.Key> {
+
+    /**
+     * Verifica se un utente ha accesso a una cartella tramite una condivisione.
+     * 
+     * @param folderId l'id della cartella
+     * @param userId l'id dell'utente
+     * @return true se l'utente ha accesso, false altrimenti
+     */
+    @Query("SELECT CASE WHEN COUNT(e) > 0 THEN true ELSE false END FROM EffectiveFolderAccess e " +
+           "WHERE e.folderId = :folderId AND e.userId = :userId")
+    boolean hasFolderAccess(@Param("folderId") Long folderId, @Param("userId") Long userId);
+
+    /**
+     * Verifica con una sola query se un utente ha accesso a un file, tramite una condivisione
+     * diretta del file o una condivisione della cartella che lo contiene o di una sua antenata.
+     * 
+     * @param fileId l'id del file
+     * @param userId l'id dell'utente
+     * @return true se l'utente ha accesso, false altrimenti
+     */
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM share_permissions sp " +
+                   "  WHERE sp.resource_id = :fileId AND sp.resource_type = 'FILE' AND sp.shared_with_user_id = :userId) " +
+                   "OR EXISTS (SELECT 1 FROM stored_files s " +
+                   "  JOIN effective_folder_access e ON e.folder_id = s.folder_id " +
+                   "  WHERE s.id = :fileId AND e.user_id = :userId)", nativeQuery = true)
+    boolean hasFileAccess(@Param("fileId") Long fileId, @Param("userId") Long userId);
+
+    /**
+     * Aggiunge o toglie la condivisione di una cartella a un utente su tutto il sottoalbero,
+     * con un solo INSERT ... ON CONFLICT sull'intervallo di percorsi.
+     * 
+     * @param userId l'id dell'utente
+     * @param folderId l'id della cartella condivisa
+     * @param delta 1 per una nuova condivisione, -1 per una revoca
+     * @return il numero di righe inserite o aggiornate
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO effective_folder_access (user_id, folder_id, grants) " +
+                   "SELECT :userId, f.id, :delta FROM folders r " +
+                   "JOIN folders f ON f.path >= r.path AND f.path < LEFT(r.path, -1) || '0' " +
+                   "WHERE r.id = :folderId " +
+                   "ON CONFLICT (user_id, folder_id) DO UPDATE SET grants = effective_folder_access.grants + EXCLUDED.grants",
+           nativeQuery = true)
+    int adjustGrant(@Param("userId") Long userId, @Param("folderId") Long folderId, @Param("delta") int delta);
+
+    /**
+     * Aggiunge o toglie a tutto il sottoalbero di una cartella gli accessi ereditati da una
+     * cartella genitore: quelli che coprono la genitore coprono anche il sottoalbero.
+     * 
+     * @param parentId l'id della cartella genitore
+     * @param folderId l'id della cartella radice del sottoalbero
+     * @param sign 1 per aggiungere gli accessi ereditati, -1 per toglierli
+     * @return il numero di righe inserite o aggiornate
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO effective_folder_access (user_id, folder_id, grants) " +
+                   "SELECT p.user_id, f.id, :sign * p.grants FROM effective_folder_access p " +
+                   "CROSS JOIN folders r " +
+                   "JOIN folders f ON f.path >= r.path AND f.path < LEFT(r.path, -1) || '0' " +
+                   "WHERE p.folder_id = :parentId AND r.id = :folderId " +
+                   "ON CONFLICT (user_id, folder_id) DO UPDATE SET grants = effective_folder_access.grants + EXCLUDED.grants",
+           nativeQuery = true)
+    int adjustInherited(@Param("parentId") Long parentId, @Param("folderId") Long folderId, @Param("sign") int sign);
+
+    /**
+     * Rimuove dal sottoalbero di una cartella le righe non più coperte da alcuna condivisione.
+     * 
+     * @param folderId l'id della cartella radice del sottoalbero
+     * @return il numero di righe eliminate
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM effective_folder_access e USING folders r, folders f " +
+                   "WHERE r.id = :folderId AND f.path >= r.path AND f.path < LEFT(r.path, -1) || '0' " +
+                   "AND e.folder_id = f.id AND e.grants <= 0", nativeQuery = true)
+    int deleteRevoked(@Param("folderId") Long folderId);
+
+    /**
+     * Ricalcola gli accessi effettivi alle cartelle di un utente a partire dalle condivisioni
+     * di cartelle esistenti, con lo stesso calcolo della migrazione iniziale. Vengono scritte solo
+     * le righe divergenti: quelle mancanti o con un numero di condivisioni diverso vengono
+     * inserite o corrette, quelle non più coperte da alcuna condivisione vengono eliminate.
+     * 
+     * Va eseguito nella transazione che ha bloccato le cartelle dell'utente con
+     * {@link FolderRepository#lockOwnerFolders}.
+     * 
+     * @param ownerId l'id dell'utente proprietario delle cartelle
+     * @return il numero di righe corrette o eliminate
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "WITH expected AS (" +
+                   "  SELECT sp.shared_with_user_id AS user_id, f.id AS folder_id, CAST(COUNT(*) AS INT) AS grants" +
+                   "  FROM share_permissions sp" +
+                   "  JOIN folders r ON r.id = sp.resource_id" +
+                   "  JOIN folders f ON f.path >= r.path AND f.path < LEFT(r.path, -1) || '0'" +
+                   "  WHERE sp.resource_type = 'FOLDER' AND sp.shared_with_user_id IS NOT NULL AND r.owner_id = :ownerId" +
+                   "  GROUP BY sp.shared_with_user_id, f.id" +
+                   "), fixed AS (" +
+                   "  INSERT INTO effective_folder_access (user_id, folder_id, grants) " +
+                   "  SELECT x.user_id, x.folder_id, x.grants FROM expected x " +
+                   "  ON CONFLICT (user_id, folder_id) DO UPDATE SET grants = EXCLUDED.grants " +
+                   "  WHERE effective_folder_access.grants <> EXCLUDED.grants " +
+                   "  RETURNING 1" +
+                   "), removed AS (" +
+                   "  DELETE FROM effective_folder_access e USING folders f " +
+                   "  WHERE f.id = e.folder_id AND f.owner_id = :ownerId " +
+                   "  AND NOT EXISTS (SELECT 1 FROM expected x WHERE x.user_id = e.user_id AND x.folder_id = e.folder_id) " +
+                   "  RETURNING 1" +
+                   ") " +
+                   "SELECT CAST((SELECT COUNT(*) FROM fixed) + (SELECT COUNT(*) FROM removed) AS INT)", nativeQuery = true)
+    int repairOwnerAccess(@Param("ownerId") Long ownerId);
+}
@@ -2,17 +2,26 @@ package com.springBoot.saveMe.repository;
 
 import com.springBoot.saveMe.model.entity.Folder;
 import com.springBoot.saveMe.model.entity.User;
+import com.springBoot.saveMe.model.projection.ArchiveFolderView;
+import com.springBoot.saveMe.model.projection.FolderPathView;
+import com.springBoot.saveMe.model.projection.FolderTreeNodeView;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Repository per l'accesso e la manipolazione delle cartelle.
  */
-public interface FolderRepository extends JpaRepository<Folder, Long> {
+public interface FolderRepository extends JpaRepository<Folder, Long>, JpaSpecificationExecutor<Folder>,
+        FolderRepositoryCustom {
 
     /**
      * Trova tutte le cartelle di un utente specifico.
@@ -57,4 +66,301 @@ public interface FolderRepository extends JpaRepository<Folder, Long> {
      * @return un Optional contenente la cartella se trovata
      */
     Optional<Folder> findByIdAndOwner(Long id, User owner);
+
+    /**
+     * Trova una cartella del sottoalbero di un'altra cartella, radice inclusa.
+     * L'appartenenza al sottoalbero è un solo confronto con il percorso materializzato della radice,
+     * senza risalire la gerarchia un livello alla volta.
+     * 
+     * @param folderId l'id della cartella cercata
+     * @param rootId l'id della cartella radice del sottoalbero
+     * @return un Optional contenente la cartella se appartiene al sottoalbero
+     */
+    @Query("SELECT d FROM Folder d, Folder r " +
+           "WHERE d.id = :folderId AND r.id = :rootId AND d.path LIKE CONCAT(r.path, '%')")
+    Optional<Folder> findInSubtree(@Param("folderId") Long folderId, @Param("rootId") Long rootId);
+
+    /**
+     * Legge la versione del contenuto di una cartella di un utente.
+     * 
+     * @param id l'id della cartella
+     * @param ownerId l'id dell'utente proprietario
+     * @return un Optional contenente la versione se la cartella appartiene all'utente
+     */
+    @Query("SELECT f.contentVersion FROM Folder f WHERE f.id = :id AND f.owner.id = :ownerId")
+    Optional<Long> findContentVersion(@Param("id") Long id, @Param("ownerId") Long ownerId);
+
+    /**
+     * Incrementa la versione del contenuto di una cartella.
+     * 
+     * @param id l'id della cartella
+     * @return il numero di righe aggiornate
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Folder f SET f.contentVersion = f.contentVersion + 1 WHERE f.id = :id")
+    int incrementContentVersion(@Param("id") Long id);
+
+    /**
+     * Legge un blocco delle cartelle del sottoalbero di una cartella (cartella inclusa),
+     * in ordine di percorso materializzato e a partire dal percorso indicato (escluso).
+     * Ogni blocco è una scansione di intervallo dell'indice sul percorso.
+     * 
+     * @param folderId l'id della cartella radice
+     * @param afterPath il percorso dell'ultima cartella del blocco precedente ("" per il primo blocco)
+     * @param limit il numero massimo di cartelle
+     * @return le cartelle del blocco
+     */
+    @Query(value = "SELECT f.id AS \"id\", f.name AS \"name\", f.path AS \"path\", " +
+                   "f.direct_file_count AS \"directFileCount\" " +
+                   "FROM folders r " +
+                   "JOIN folders f ON f.path >= r.path AND f.path < LEFT(r.path, -1) || '0' " +
+                   "WHERE r.id = :folderId AND f.path > :afterPath " +
+                   "ORDER BY f.path LIMIT :limit", nativeQuery = true)
+    List<ArchiveFolderView> findArchiveFolders(@Param("folderId") Long folderId, @Param("afterPath") String afterPath,
+                                               @Param("limit") int limit);
+
+    /**
+     * Legge un blocco dell'albero delle cartelle di un utente, in ordine di percorso
+     * (ogni cartella segue la sua genitore) e a partire dal percorso indicato (escluso).
+     * Per ogni cartella riporta il numero di sottocartelle e di file diretti e la dimensione
+     * totale del sottoalbero, dai contatori aggregati.
+     * 
+     * @param ownerId l'id dell'utente proprietario
+     * @param maxDepth la profondità massima (0 per le sole cartelle di primo livello)
+     * @param afterPath il percorso dell'ultima cartella del blocco precedente ("" per il primo blocco)
+     * @param limit il numero massimo di cartelle
+     * @return le cartelle del blocco
+     */
+    @Query(value = "SELECT f.id AS \"id\", f.name AS \"name\", f.parent_folder_id AS \"parentFolderId\", " +
+                   "f.path AS \"path\", " +
+                   "f.direct_folder_count AS \"folderCount\", f.direct_file_count AS \"fileCount\", " +
+                   "f.total_size AS \"totalSize\" " +
+                   "FROM folders f " +
+                   "WHERE f.owner_id = :ownerId AND f.path > :afterPath " +
+                   "AND LENGTH(f.path) - LENGTH(REPLACE(f.path, '/', '')) - 2 <= :maxDepth " +
+                   "ORDER BY f.path LIMIT :limit", nativeQuery = true)
+    List<FolderTreeNodeView> findTreeBatch(@Param("ownerId") Long ownerId, @Param("maxDepth") int maxDepth,
+                                           @Param("afterPath") String afterPath, @Param("limit") int limit);
+
+    /**
+     * Aggiorna i contatori di una cartella e dei suoi antenati: la variazione si applica
+     * ai valori diretti della cartella e ai totali di tutto il percorso, cartella inclusa.
+     * Gli elenchi mostrano i totali di ogni cartella, quindi nello stesso aggiornamento viene
+     * incrementata la versione del contenuto di tutte le cartelle del percorso e del livello
+     * principale del proprietario: gli ETag degli elenchi che le contengono cambiano.
+     * 
+     * @param folderId l'id della cartella il cui contenuto diretto è cambiato
+     * @param size la variazione della dimensione in byte
+     * @param files la variazione del numero di file
+     * @param folders la variazione del numero di sottocartelle
+     * @return 1 se i contatori sono stati aggiornati, 0 se la cartella non esiste
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "WITH updated AS (" +
+                   "  UPDATE folders SET " +
+                   "  direct_size = direct_size + CASE WHEN id = :folderId THEN :size ELSE 0 END, " +
+                   "  direct_file_count = direct_file_count + CASE WHEN id = :folderId THEN :files ELSE 0 END, " +
+                   "  direct_folder_count = direct_folder_count + CASE WHEN id = :folderId THEN :folders ELSE 0 END, " +
+                   "  total_size = total_size + :size, " +
+                   "  total_file_count = total_file_count + :files, " +
+                   "  total_folder_count = total_folder_count + :folders, " +
+                   "  content_version = content_version + 1 " +
+                   "  WHERE id = ANY(CAST(string_to_array(TRIM(BOTH '/' FROM " +
+                   "    (SELECT p.path FROM folders p WHERE p.id = :folderId)), '/') AS BIGINT[])) " +
+                   "  RETURNING owner_id" +
+                   ") " +
+                   "UPDATE users SET root_content_version = root_content_version + 1 " +
+                   "WHERE id IN (SELECT owner_id FROM updated)", nativeQuery = true)
+    int adjustCounters(@Param("folderId") Long folderId, @Param("size") long size,
+                       @Param("files") long files, @Param("folders") long folders);
+
+    /**
+     * Aggiunge o sottrae un intero sottoalbero dai contatori della cartella genitore e dei suoi antenati,
+     * leggendo i totali correnti della cartella radice del sottoalbero.
+     * Come per {@link #adjustCounters}, incrementa la versione del contenuto delle cartelle
+     * del percorso e del livello principale del proprietario.
+     * 
+     * @param parentId l'id della cartella genitore
+     * @param folderId l'id della cartella radice del sottoalbero
+     * @param sign 1 per aggiungere il sottoalbero, -1 per sottrarlo
+     * @return 1 se i contatori sono stati aggiornati, 0 se una delle cartelle non esiste
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "WITH updated AS (" +
+                   "  UPDATE folders a SET " +
+                   "  direct_folder_count = a.direct_folder_count + CASE WHEN a.id = :parentId THEN :sign ELSE 0 END, " +
+                   "  total_size = a.total_size + :sign * t.total_size, " +
+                   "  total_file_count = a.total_file_count + :sign * t.total_file_count, " +
+                   "  total_folder_count = a.total_folder_count + :sign * (t.total_folder_count + 1), " +
+                   "  content_version = a.content_version + 1 " +
+                   "  FROM folders t " +
+                   "  WHERE t.id = :folderId AND a.id = ANY(CAST(string_to_array(TRIM(BOTH '/' FROM " +
+                   "    (SELECT p.path FROM folders p WHERE p.id = :parentId)), '/') AS BIGINT[])) " +
+                   "  RETURNING a.owner_id" +
+                   ") " +
+                   "UPDATE users SET root_content_version = root_content_version + 1 " +
+                   "WHERE id IN (SELECT owner_id FROM updated)", nativeQuery = true)
+    int adjustCountersForSubtree(@Param("parentId") Long parentId, @Param("folderId") Long folderId,
+                                 @Param("sign") int sign);
+
+    /**
+     * Blocca le righe di tutte le cartelle di un utente fino al termine della transazione,
+     * in ordine di id. Precede il ricalcolo dei contatori e degli accessi effettivi: gli aggiornamenti
+     * incrementali già in corso vengono attesi e quelli successivi attendono la fine del ricalcolo,
+     * così nessun incremento va perso tra la lettura e la scrittura dei totali.
+     * 
+     * @param ownerId l'id dell'utente proprietario
+     * @return gli id delle cartelle bloccate
+     */
+    @Query(value = "SELECT f.id FROM folders f WHERE f.owner_id = :ownerId ORDER BY f.id FOR UPDATE", nativeQuery = true)
+    List<Long> lockOwnerFolders(@Param("ownerId") Long ownerId);
+
+    /**
+     * Ricalcola i contatori di tutte le cartelle di un utente a partire dai file e dalle cartelle
+     * effettivi, con un solo aggiornamento. Vengono scritte solo le cartelle con contatori divergenti;
+     * la versione del contenuto delle cartelle corrette, delle loro cartelle genitore e, se serve,
+     * del livello principale viene incrementata, così gli elenchi non restano in cache con i vecchi valori.
+     * 
+     * Va eseguito nella transazione che ha bloccato le cartelle con {@link #lockOwnerFolders}.
+     * 
+     * @param ownerId l'id dell'utente proprietario
+     * @return il numero di cartelle corrette
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "WITH direct AS (" +
+                   "  SELECT f.id, f.path, COALESCE(s.size, 0) AS size, COALESCE(s.files, 0) AS files," +
+                   "         (SELECT COUNT(*) FROM folders c WHERE c.parent_folder_id = f.id) AS folders" +
+                   "  FROM folders f" +
+                   "  LEFT JOIN (SELECT sf.folder_id, SUM(sf.size) AS size, COUNT(*) AS files FROM stored_files sf" +
+                   "             JOIN folders o ON o.id = sf.folder_id AND o.owner_id = :ownerId" +
+                   "             GROUP BY sf.folder_id) s ON s.folder_id = f.id" +
+                   "  WHERE f.owner_id = :ownerId" +
+                   "), totals AS (" +
+                   "  SELECT CAST(a.ancestor AS BIGINT) AS id, SUM(d.size) AS size, SUM(d.files) AS files," +
+                   "         COUNT(*) - 1 AS folders" +
+                   "  FROM direct d CROSS JOIN LATERAL unnest(string_to_array(TRIM(BOTH '/' FROM d.path), '/')) AS a (ancestor)" +
+                   "  GROUP BY a.ancestor" +
+                   "), repaired AS (" +
+                   "  UPDATE folders f SET direct_size = d.size, direct_file_count = d.files, direct_folder_count = d.folders, " +
+                   "  total_size = t.size, total_file_count = t.files, total_folder_count = t.folders, " +
+                   "  content_version = f.content_version + 1 " +
+                   "  FROM direct d JOIN totals t ON t.id = d.id " +
+                   "  WHERE f.id = d.id AND (f.direct_size, f.direct_file_count, f.direct_folder_count, " +
+                   "  f.total_size, f.total_file_count, f.total_folder_count) " +
+                   "  IS DISTINCT FROM (d.size, d.files, d.folders, t.size, t.files, t.folders) " +
+                   "  RETURNING f.id, f.parent_folder_id" +
+                   "), parents AS (" +
+                   "  UPDATE folders p SET content_version = p.content_version + 1 " +
+                   "  WHERE p.id IN (SELECT r.parent_folder_id FROM repaired r) " +
+                   "  AND p.id NOT IN (SELECT r.id FROM repaired r)" +
+                   "), root AS (" +
+                   "  UPDATE users u SET root_content_version = u.root_content_version + 1 " +
+                   "  WHERE u.id = :ownerId AND EXISTS (SELECT 1 FROM repaired r WHERE r.parent_folder_id IS NULL)" +
+                   ") " +
+                   "SELECT CAST(COUNT(*) AS INT) FROM repaired", nativeQuery = true)
+    int repairCounters(@Param("ownerId") Long ownerId);
+
+    /**
+     * Trova gli id degli utenti che possiedono almeno una cartella.
+     * 
+     * @return una lista di id utente
+     */
+    @Query("SELECT DISTINCT f.owner.id FROM Folder f")
+    List<Long> findOwnerIds();
+
+    /**
+     * Raccoglie con una sola scansione dell'indice sul percorso gli id del sottoalbero di una cartella
+     * (cartella inclusa) e ne blocca le righe fino al termine della transazione:
+     * upload e nuove sottocartelle concorrenti attendono e non possono finire nel sottoalbero eliminato.
+     * 
+     * @param folderId l'id della cartella radice
+     * @return gli id delle cartelle del sottoalbero
+     */
+    @Query(value = "SELECT f.id FROM folders r " +
+                   "JOIN folders f ON f.path >= r.path AND f.path < LEFT(r.path, -1) || '0' " +
+                   "WHERE r.id = :folderId FOR UPDATE OF f", nativeQuery = true)
+    List<Long> lockSubtreeIds(@Param("folderId") Long folderId);
+
+    /**
+     * Blocca le righe delle cartelle indicate fino al termine della transazione e ne legge
+     * i percorsi aggiornati. Le righe vengono bloccate in ordine di id, così due spostamenti
+     * concorrenti sulle stesse cartelle non possono bloccarsi a vicenda.
+     * 
+     * @param ids gli id delle cartelle
+     * @return i percorsi delle cartelle bloccate
+     */
+    @Query(value = "SELECT f.id AS \"id\", f.path AS \"path\" FROM folders f " +
+                   "WHERE f.id IN (:ids) ORDER BY f.id FOR UPDATE", nativeQuery = true)
+    List<FolderPathView> lockPaths(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Verifica con una sola query se una cartella di un utente è discendente di un'altra.
+     * 
+     * @param descendantId l'id della possibile cartella discendente
+     * @param ancestorId l'id della cartella antenata
+     * @param ownerId l'id dell'utente proprietario
+     * @return true se la prima cartella è discendente della seconda
+     */
+    @Query("SELECT CASE WHEN COUNT(d) > 0 THEN true ELSE false END FROM Folder d, Folder a " +
+           "WHERE d.id = :descendantId AND a.id = :ancestorId AND d.owner.id = :ownerId " +
+           "AND d.id <> a.id AND d.path LIKE CONCAT(a.path, '%')")
+    boolean isDescendant(@Param("descendantId") Long descendantId, @Param("ancestorId") Long ancestorId,
+                         @Param("ownerId") Long ownerId);
+
+    /**
+     * Trova gli antenati di una cartella di un utente, dalla radice alla cartella stessa inclusa.
+     * Gli id vengono letti dal percorso materializzato: una sola query sulla chiave primaria.
+     * 
+     * @param folderId l'id della cartella
+     * @param ownerId l'id dell'utente proprietario
+     * @return le cartelle del percorso, vuota se la cartella non appartiene all'utente
+     */
+    @Query(value = "SELECT a.* FROM folders f " +
+                   "JOIN folders a ON a.id = ANY(CAST(string_to_array(TRIM(BOTH '/' FROM f.path), '/') AS BIGINT[])) " +
+                   "WHERE f.id = :folderId AND f.owner_id = :ownerId " +
+                   "ORDER BY LENGTH(a.path)", nativeQuery = true)
+    List<Folder> findPathToRoot(@Param("folderId") Long folderId, @Param("ownerId") Long ownerId);
+
+    /**
+     * Calcola il percorso materializzato di una cartella appena creata a partire da quello della cartella genitore.
+     * 
+     * @param id l'id della cartella
+     * @return il numero di righe aggiornate
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE folders f SET path = " +
+                   "COALESCE((SELECT p.path FROM folders p WHERE p.id = f.parent_folder_id), '/') || f.id || '/' " +
+                   "WHERE f.id = :id", nativeQuery = true)
+    int assignPath(@Param("id") Long id);
+
+    /**
+     * Sposta un sottoalbero sostituendo il prefisso del percorso di tutte le sue cartelle
+     * con un solo aggiornamento.
+     * 
+     * @param oldPath il percorso attuale della cartella spostata
+     * @param oldPathEnd il limite superiore (escluso) dei percorsi del sottoalbero
+     * @param newPath il nuovo percorso della cartella spostata
+     * @return il numero di cartelle aggiornate
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE folders SET path = :newPath || SUBSTRING(path FROM LENGTH(:oldPath) + 1) " +
+                   "WHERE path >= :oldPath AND path < :oldPathEnd", nativeQuery = true)
+    int movePath(@Param("oldPath") String oldPath, @Param("oldPathEnd") String oldPathEnd,
+                 @Param("newPath") String newPath);
+
+    /**
+     * Elimina una cartella: le sottocartelle vengono eliminate dal database tramite ON DELETE CASCADE.
+     * 
+     * @param id l'id della cartella radice
+     * @return il numero di righe eliminate
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM folders WHERE id = :id", nativeQuery = true)
+    int deleteTree(@Param("id") Long id);
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.springBoot.saveMe.repository;
+
+import com.springBoot.saveMe.dto.folder.FolderResponseDto;
+import com.springBoot.saveMe.model.entity.Folder;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Query personalizzate sulle cartelle, implementate con la Criteria API.
+ */
+public interface FolderRepositoryCustom {
+
+    /**
+     * Legge un elenco di cartelle selezionando solo le colonne del DTO, con il proprietario
+     * in join: il numero di query non dipende dal numero di cartelle.
+     * 
+     * @param spec i criteri dell'elenco
+     * @param sort l'ordinamento
+     * @param limit il numero massimo di righe
+     * @return una lista di DTO
+     */
+    List<FolderResponseDto> findListing(Specification<Folder> spec, Sort sort, int limit);
+}
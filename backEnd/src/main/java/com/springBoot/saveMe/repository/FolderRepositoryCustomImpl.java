@@ -0,0 +1,56 @@
+package com.springBoot.saveMe.repository;
+
+import com.springBoot.saveMe.dto.folder.FolderResponseDto;
+import com.springBoot.saveMe.model.entity.Folder;
+import com.springBoot.saveMe.model.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Implementazione delle query personalizzate sulle cartelle.
+ */
+public class FolderRepositoryCustomImpl implements FolderRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<FolderResponseDto> findListing(Specification<Folder> spec, Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<FolderResponseDto> query = cb.createQuery(FolderResponseDto.class);
+        Root<Folder> root = query.from(Folder.class);
+        Join<Folder, User> owner = root.join("owner");
+        Join<Folder, Folder> parentFolder = root.join("parentFolder", JoinType.LEFT);
+
+        // Stesso ordine dei campi di FolderResponseDto (costruttore generato da @AllArgsConstructor)
+        query.select(cb.construct(FolderResponseDto.class,
+                root.get("id"),
+                root.get("name"),
+                owner.get("id"),
+                owner.get("username"),
+                parentFolder.get("id"),
+                root.get("directSize"),
+                root.get("directFileCount"),
+                root.get("directFolderCount"),
+                root.get("totalSize"),
+                root.get("totalFileCount"),
+                root.get("totalFolderCount"),
+                root.get("createdAt"),
+                root.get("updatedAt")));
+        query.where(spec.toPredicate(root, query, cb));
+        query.orderBy(ListingSpecifications.toOrders(sort, root, cb));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
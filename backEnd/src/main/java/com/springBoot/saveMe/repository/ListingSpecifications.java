@@ -0,0 +1,90 @@
+package com.springBoot.saveMe.repository;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Frammenti di criteri comuni agli elenchi paginati di file e cartelle.
+ */
+public final class ListingSpecifications {
+
+    private ListingSpecifications() {
+    }
+
+    /**
+     * Restituisce gli elementi che seguono la chiave (valore di ordinamento, id) dell'ultimo
+     * elemento della pagina precedente. La prima condizione delimita l'intervallo dell'indice
+     * composito, la seconda esclude gli elementi già restituiti con lo stesso valore.
+     *
+     * @param attribute l'attributo di ordinamento
+     * @param value il valore di ordinamento dell'ultimo elemento
+     * @param id l'id dell'ultimo elemento
+     * @param descending true per l'ordinamento decrescente
+     * @return il criterio
+     */
+    public static <T, V extends Comparable<? super V>> Specification<T> keysetAfter(
+            String attribute, V value, Long id, boolean descending) {
+        return (root, query, cb) -> {
+            Path<V> key = root.get(attribute);
+            Path<Long> idPath = root.get("id");
+            return descending
+                    ? cb.and(cb.lessThanOrEqualTo(key, value), cb.or(cb.lessThan(key, value), cb.lessThan(idPath, id)))
+                    : cb.and(cb.greaterThanOrEqualTo(key, value), cb.or(cb.greaterThan(key, value), cb.greaterThan(idPath, id)));
+        };
+    }
+
+    /**
+     * Filtra gli elementi per data di creazione.
+     *
+     * @param after la data minima inclusa (può essere null)
+     * @param before la data massima esclusa (può essere null)
+     * @return il criterio, null se non ci sono limiti
+     */
+    public static <T> Specification<T> createdBetween(LocalDateTime after, LocalDateTime before) {
+        return (root, query, cb) -> {
+            Path<LocalDateTime> createdAt = root.get("createdAt");
+            if (after != null && before != null) {
+                return cb.and(cb.greaterThanOrEqualTo(createdAt, after), cb.lessThan(createdAt, before));
+            }
+            if (after != null) {
+                return cb.greaterThanOrEqualTo(createdAt, after);
+            }
+            return before != null ? cb.lessThan(createdAt, before) : null;
+        };
+    }
+
+    /**
+     * Ordinamento per chiave: l'attributo richiesto e l'id come criterio di spareggio.
+     *
+     * @param attribute l'attributo di ordinamento
+     * @param descending true per l'ordinamento decrescente
+     * @return l'ordinamento
+     */
+    public static Sort keysetSort(String attribute, boolean descending) {
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        return Sort.by(direction, attribute).and(Sort.by(direction, "id"));
+    }
+
+    /**
+     * Converte un ordinamento nei criteri di ordinamento di una query Criteria.
+     *
+     * @param sort l'ordinamento
+     * @param root la radice della query
+     * @param cb il builder dei criteri
+     * @return i criteri di ordinamento
+     */
+    public static List<Order> toOrders(Sort sort, Root<?> root, CriteriaBuilder cb) {
+        return sort.stream()
+                .map(order -> order.isAscending()
+                        ? cb.asc(root.get(order.getProperty()))
+                        : cb.desc(root.get(order.getProperty())))
+                .toList();
+    }
+}
@@ -3,26 +3,37 @@ package com.springBoot.saveMe.repository;
 import com.springBoot.saveMe.model.entity.SharePermission;
 import com.springBoot.saveMe.model.entity.User;
 import com.springBoot.saveMe.model.enums.ResourceType;
+import com.springBoot.saveMe.model.projection.PublicTokenView;
+import com.springBoot.saveMe.model.projection.PurgedShareView;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Repository per l'accesso e la manipolazione dei permessi di condivisione.
  */
-public interface SharePermissionRepository extends JpaRepository<SharePermission, Long> {
+public interface SharePermissionRepository extends JpaRepository<SharePermission, Long>, SharePermissionRepositoryCustom {
 
     /**
-     * Trova tutti i permessi di condivisione per un dato file.
+     * Trova tutti i permessi di condivisione per una risorsa, con gli utenti destinatari
+     * caricati nella stessa query.
      * 
-     * @param resourceId l'id del file
+     * @param resourceId l'id della risorsa
+     * @param resourceType il tipo della risorsa
      * @return una lista di permessi
      */
-    List<SharePermission> findByResourceIdAndResourceType(Long resourceId, ResourceType resourceType);
+    @Query("SELECT sp FROM SharePermission sp LEFT JOIN FETCH sp.sharedWithUser " +
+           "WHERE sp.resourceId = :resourceId AND sp.resourceType = :resourceType")
+    List<SharePermission> findByResourceIdAndResourceType(@Param("resourceId") Long resourceId,
+                                                          @Param("resourceType") ResourceType resourceType);
     
     /**
      * Trova tutti i permessi di condivisione di un utente.
@@ -50,6 +61,30 @@ public interface SharePermissionRepository extends JpaRepository<SharePermission
     @Query("SELECT sp FROM SharePermission sp WHERE sp.publicLinkToken = :token AND (sp.expiresAt IS NULL OR sp.expiresAt > :now)")
     Optional<SharePermission> findValidPublicLink(@Param("token") String publicLinkToken, @Param("now") LocalDateTime now);
     
+    /**
+     * Conta i link pubblici non scaduti.
+     * 
+     * @param now la data/ora attuale
+     * @return il numero di link pubblici validi
+     */
+    @Query("SELECT COUNT(sp) FROM SharePermission sp " +
+           "WHERE sp.publicLinkToken IS NOT NULL AND (sp.expiresAt IS NULL OR sp.expiresAt > :now)")
+    long countLiveTokens(@Param("now") LocalDateTime now);
+    
+    /**
+     * Legge un blocco di token di link pubblici non scaduti, in ordine di id a partire da quello indicato.
+     * 
+     * @param afterId l'id dell'ultimo permesso letto (0 per iniziare)
+     * @param now la data/ora attuale
+     * @param pageable la dimensione del blocco
+     * @return una lista di token
+     */
+    @Query("SELECT sp.id AS id, sp.publicLinkToken AS publicLinkToken FROM SharePermission sp " +
+           "WHERE sp.publicLinkToken IS NOT NULL AND sp.id > :afterId " +
+           "AND (sp.expiresAt IS NULL OR sp.expiresAt > :now) ORDER BY sp.id")
+    List<PublicTokenView> findLiveTokens(@Param("afterId") Long afterId, @Param("now") LocalDateTime now,
+                                         Pageable pageable);
+    
     /**
      * Verifica se un utente ha accesso a una risorsa.
      * 
@@ -64,6 +99,24 @@ public interface SharePermissionRepository extends JpaRepository<SharePermission
                            @Param("resourceType") ResourceType resourceType, 
                            @Param("userId") Long userId);
     
+    /**
+     * Elimina un blocco di condivisioni scadute, al massimo il numero indicato.
+     * Le righe già bloccate da altre transazioni vengono saltate, così l'eliminazione
+     * non attende e non tiene a lungo i lock.
+     * 
+     * @param now la data/ora attuale
+     * @param limit il numero massimo di righe da eliminare
+     * @return le condivisioni eliminate
+     */
+    @Transactional
+    @Query(value = "DELETE FROM share_permissions WHERE id IN (" +
+                   "  SELECT id FROM share_permissions WHERE expires_at IS NOT NULL AND expires_at <= :now " +
+                   "  ORDER BY expires_at LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+                   "RETURNING resource_id AS \"resourceId\", resource_type AS \"resourceType\", " +
+                   "shared_with_user_id AS \"sharedWithUserId\", public_link_token AS \"publicLinkToken\"",
+           nativeQuery = true)
+    List<PurgedShareView> deleteExpiredBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+    
     /**
      * Elimina tutti i permessi di condivisione per una risorsa.
      * 
@@ -71,4 +124,40 @@ public interface SharePermissionRepository extends JpaRepository<SharePermission
      * @param resourceType il tipo della risorsa
      */
     void deleteByResourceIdAndResourceType(Long resourceId, ResourceType resourceType);
+    
+    /**
+     * Trova gli id dei link pubblici delle cartelle indicate e dei file in esse contenuti.
+     * 
+     * @param folderIds gli id delle cartelle
+     * @return gli id dei permessi
+     */
+    @Query("SELECT sp.id FROM SharePermission sp WHERE sp.publicLinkToken IS NOT NULL AND (" +
+           "(sp.resourceType = com.springBoot.saveMe.model.enums.ResourceType.FOLDER AND sp.resourceId IN :folderIds) OR " +
+           "(sp.resourceType = com.springBoot.saveMe.model.enums.ResourceType.FILE " +
+           "AND sp.resourceId IN (SELECT f.id FROM StoredFile f WHERE f.folder.id IN :folderIds)))")
+    List<Long> findPublicLinkIdsInFolders(@Param("folderIds") Collection<Long> folderIds);
+    
+    /**
+     * Elimina i permessi di condivisione delle cartelle indicate.
+     * 
+     * @param folderIds gli id delle cartelle
+     * @return il numero di permessi eliminati
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SharePermission sp WHERE sp.resourceType = com.springBoot.saveMe.model.enums.ResourceType.FOLDER " +
+           "AND sp.resourceId IN :folderIds")
+    int deleteFolderPermissions(@Param("folderIds") Collection<Long> folderIds);
+    
+    /**
+     * Elimina i permessi di condivisione dei file contenuti nelle cartelle indicate.
+     * 
+     * @param folderIds gli id delle cartelle
+     * @return il numero di permessi eliminati
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SharePermission sp WHERE sp.resourceType = com.springBoot.saveMe.model.enums.ResourceType.FILE " +
+           "AND sp.resourceId IN (SELECT f.id FROM StoredFile f WHERE f.folder.id IN :folderIds)")
+    int deleteFilePermissionsInFolders(@Param("folderIds") Collection<Long> folderIds);
 }
\ No newline at end of file
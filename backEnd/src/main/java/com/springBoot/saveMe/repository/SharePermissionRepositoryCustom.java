@@ -0,0 +1,26 @@
+package com.springBoot.saveMe.repository;
+
+import com.springBoot.saveMe.dto.share.IncomingShareDto;
+import com.springBoot.saveMe.model.entity.SharePermission;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Query personalizzate sui permessi di condivisione, implementate con la Criteria API.
+ */
+public interface SharePermissionRepositoryCustom {
+
+    /**
+     * Legge un elenco di condivisioni ricevute con una sola query: i permessi vengono uniti
+     * in join ai file, alle cartelle e ai rispettivi proprietari. Le condivisioni di risorse
+     * non più esistenti vengono escluse.
+     * 
+     * @param spec i criteri dell'elenco
+     * @param sort l'ordinamento
+     * @param limit il numero massimo di righe
+     * @return una lista di DTO
+     */
+    List<IncomingShareDto> findIncoming(Specification<SharePermission> spec, Sort sort, int limit);
+}
@@ -0,0 +1,71 @@
+package com.springBoot.saveMe.repository;
+
+import com.springBoot.saveMe.dto.share.IncomingShareDto;
+import com.springBoot.saveMe.model.entity.Folder;
+import com.springBoot.saveMe.model.entity.SharePermission;
+import com.springBoot.saveMe.model.entity.StoredFile;
+import com.springBoot.saveMe.model.entity.User;
+import com.springBoot.saveMe.model.enums.ResourceType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import org.hibernate.Session;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.hibernate.query.criteria.JpaCriteriaQuery;
+import org.hibernate.query.criteria.JpaEntityJoin;
+import org.hibernate.query.criteria.JpaRoot;
+import org.hibernate.query.sqm.tree.SqmJoinType;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Implementazione delle query personalizzate sui permessi di condivisione.
+ * I permessi non hanno un'associazione verso la risorsa (solo id e tipo), quindi file
+ * e cartelle vengono uniti con join esplicite sulle entità.
+ */
+public class SharePermissionRepositoryCustomImpl implements SharePermissionRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<IncomingShareDto> findIncoming(Specification<SharePermission> spec, Sort sort, int limit) {
+        HibernateCriteriaBuilder cb = entityManager.unwrap(Session.class).getCriteriaBuilder();
+        JpaCriteriaQuery<IncomingShareDto> query = cb.createQuery(IncomingShareDto.class);
+        JpaRoot<SharePermission> root = query.from(SharePermission.class);
+
+        JpaEntityJoin<StoredFile> file = root.join(StoredFile.class, SqmJoinType.LEFT);
+        file.on(cb.equal(root.get("resourceType"), ResourceType.FILE),
+                cb.equal(file.get("id"), root.get("resourceId")));
+        Join<StoredFile, User> fileOwner = file.join("owner", JoinType.LEFT);
+
+        JpaEntityJoin<Folder> folder = root.join(Folder.class, SqmJoinType.LEFT);
+        folder.on(cb.equal(root.get("resourceType"), ResourceType.FOLDER),
+                cb.equal(folder.get("id"), root.get("resourceId")));
+        Join<Folder, User> folderOwner = folder.join("owner", JoinType.LEFT);
+
+        // Stesso ordine dei campi di IncomingShareDto (costruttore generato da @AllArgsConstructor)
+        query.select(cb.construct(IncomingShareDto.class,
+                root.get("id"),
+                root.get("resourceId"),
+                root.get("resourceType"),
+                cb.coalesce(file.<String>get("originalFileName"), folder.<String>get("name")),
+                file.get("contentType"),
+                cb.coalesce(file.<Long>get("size"), folder.<Long>get("totalSize")),
+                cb.coalesce(fileOwner.<Long>get("id"), folderOwner.<Long>get("id")),
+                cb.coalesce(fileOwner.<String>get("username"), folderOwner.<String>get("username")),
+                root.get("permissionType"),
+                root.get("expiresAt"),
+                root.get("createdAt")));
+        query.where(spec.toPredicate(root, query, cb),
+                cb.or(cb.isNotNull(file.get("id")), cb.isNotNull(folder.get("id"))));
+        query.orderBy(ListingSpecifications.toOrders(sort, root, cb));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
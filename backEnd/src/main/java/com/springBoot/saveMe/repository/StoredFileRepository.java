@@ -3,17 +3,24 @@ package com.springBoot.saveMe.repository;
 import com.springBoot.saveMe.model.entity.Folder;
 import com.springBoot.saveMe.model.entity.StoredFile;
 import com.springBoot.saveMe.model.entity.User;
+import com.springBoot.saveMe.model.projection.ArchiveEntryView;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Repository per l'accesso e la manipolazione dei file.
  */
-public interface StoredFileRepository extends JpaRepository<StoredFile, Long> {
+public interface StoredFileRepository extends JpaRepository<StoredFile, Long>, JpaSpecificationExecutor<StoredFile>,
+        StoredFileRepositoryCustom {
 
     /**
      * Trova tutti i file di un utente.
@@ -58,4 +65,81 @@ public interface StoredFileRepository extends JpaRepository<StoredFile, Long> {
      * @return un Optional contenente il file se trovato
      */
     Optional<StoredFile> findByIdAndOwner(Long id, User owner);
+    
+    /**
+     * Legge un blocco dei file di una cartella per l'archivio ZIP, in ordine di nome e id
+     * e a partire dall'ultimo file del blocco precedente (escluso).
+     * 
+     * @param folderId l'id della cartella
+     * @param afterName il nome dell'ultimo file del blocco precedente ("" per il primo blocco)
+     * @param afterId l'id dell'ultimo file del blocco precedente (0 per il primo blocco)
+     * @param limit il numero massimo di file
+     * @return i file del blocco
+     */
+    @Query(value = "SELECT s.id AS \"id\", s.original_file_name AS \"originalFileName\", " +
+                   "s.content_type AS \"contentType\", s.storage_path AS \"storagePath\", " +
+                   "s.content_encoding AS \"contentEncoding\", " +
+                   "CAST(EXTRACT(EPOCH FROM s.created_at) * 1000 AS BIGINT) AS \"createdAtMillis\" " +
+                   "FROM stored_files s " +
+                   "WHERE s.folder_id = :folderId AND (s.original_file_name, s.id) > (:afterName, :afterId) " +
+                   "ORDER BY s.original_file_name, s.id LIMIT :limit", nativeQuery = true)
+    List<ArchiveEntryView> findArchiveEntries(@Param("folderId") Long folderId, @Param("afterName") String afterName,
+                                              @Param("afterId") Long afterId, @Param("limit") int limit);
+    
+    /**
+     * Trova un file contenuto, a qualsiasi profondità, nel sottoalbero di una cartella.
+     * L'appartenenza al sottoalbero è un solo confronto con il percorso materializzato della radice.
+     * 
+     * @param fileId l'id del file
+     * @param rootId l'id della cartella radice del sottoalbero
+     * @return un Optional contenente il file se appartiene al sottoalbero
+     */
+    @Query("SELECT f FROM StoredFile f JOIN f.folder d, Folder r " +
+           "WHERE f.id = :fileId AND r.id = :rootId AND d.path LIKE CONCAT(r.path, '%')")
+    Optional<StoredFile> findInSubtree(@Param("fileId") Long fileId, @Param("rootId") Long rootId);
+    
+    /**
+     * Trova i percorsi di storage nel layout piatto (senza sottodirectory),
+     * in ordine e a partire dal percorso indicato.
+     * 
+     * @param after il percorso da cui proseguire (escluso)
+     * @param pageable la dimensione del blocco
+     * @return una lista di percorsi distinti
+     */
+    @Query("SELECT DISTINCT f.storagePath FROM StoredFile f WHERE f.storagePath NOT LIKE '%/%' AND f.storagePath > :after ORDER BY f.storagePath")
+    List<String> findFlatStoragePaths(@Param("after") String after, Pageable pageable);
+    
+    /**
+     * Trova i percorsi di storage nel layout a sottodirectory,
+     * in ordine e a partire dal percorso indicato.
+     * 
+     * @param after il percorso da cui proseguire (escluso)
+     * @param pageable la dimensione del blocco
+     * @return una lista di percorsi distinti
+     */
+    @Query("SELECT DISTINCT f.storagePath FROM StoredFile f WHERE f.storagePath LIKE '%/%' AND f.storagePath > :after ORDER BY f.storagePath")
+    List<String> findShardedStoragePaths(@Param("after") String after, Pageable pageable);
+    
+    /**
+     * Aggiorna il percorso di storage di tutti i file che referenziano lo stesso blob.
+     * 
+     * @param oldPath il percorso attuale
+     * @param newPath il nuovo percorso
+     * @return il numero di file aggiornati
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredFile f SET f.storagePath = :newPath WHERE f.storagePath = :oldPath")
+    int updateStoragePath(@Param("oldPath") String oldPath, @Param("newPath") String newPath);
+    
+    /**
+     * Elimina tutti i file contenuti nelle cartelle indicate.
+     * 
+     * @param folderIds gli id delle cartelle
+     * @return il numero di file eliminati
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM StoredFile f WHERE f.folder.id IN :folderIds")
+    int deleteByFolderIds(@Param("folderIds") Collection<Long> folderIds);
 }
\ No newline at end of file
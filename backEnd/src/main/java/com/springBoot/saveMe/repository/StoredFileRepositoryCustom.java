@@ -0,0 +1,25 @@
+package com.springBoot.saveMe.repository;
+
+import com.springBoot.saveMe.dto.file.FileResponseDto;
+import com.springBoot.saveMe.model.entity.StoredFile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Query personalizzate sui file, implementate con la Criteria API.
+ */
+public interface StoredFileRepositoryCustom {
+
+    /**
+     * Legge un elenco di file selezionando solo le colonne del DTO, con il proprietario
+     * in join: il numero di query non dipende dal numero di file.
+     * 
+     * @param spec i criteri dell'elenco
+     * @param sort l'ordinamento
+     * @param limit il numero massimo di righe
+     * @return una lista di DTO
+     */
+    List<FileResponseDto> findListing(Specification<StoredFile> spec, Sort sort, int limit);
+}
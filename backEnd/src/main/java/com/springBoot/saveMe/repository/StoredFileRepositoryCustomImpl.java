@@ -0,0 +1,53 @@
+package com.springBoot.saveMe.repository;
+
+import com.springBoot.saveMe.dto.file.FileResponseDto;
+import com.springBoot.saveMe.model.entity.Folder;
+import com.springBoot.saveMe.model.entity.StoredFile;
+import com.springBoot.saveMe.model.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Implementazione delle query personalizzate sui file.
+ */
+public class StoredFileRepositoryCustomImpl implements StoredFileRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<FileResponseDto> findListing(Specification<StoredFile> spec, Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<FileResponseDto> query = cb.createQuery(FileResponseDto.class);
+        Root<StoredFile> root = query.from(StoredFile.class);
+        Join<StoredFile, User> owner = root.join("owner");
+        Join<StoredFile, Folder> folder = root.join("folder", JoinType.LEFT);
+
+        // Stesso ordine dei campi di FileResponseDto (costruttore generato da @AllArgsConstructor)
+        query.select(cb.construct(FileResponseDto.class,
+                root.get("id"),
+                root.get("originalFileName"),
+                root.get("contentType"),
+                root.get("size"),
+                owner.get("id"),
+                owner.get("username"),
+                folder.get("id"),
+                root.get("createdAt"),
+                root.get("updatedAt")));
+        query.where(spec.toPredicate(root, query, cb));
+        query.orderBy(ListingSpecifications.toOrders(sort, root, cb));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
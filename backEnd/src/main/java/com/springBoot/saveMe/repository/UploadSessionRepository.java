@@ -0,0 +1,64 @@
+package com.springBoot.saveMe.repository;
+
+import com.springBoot.saveMe.model.entity.UploadSession;
+import com.springBoot.saveMe.model.entity.User;
+import com.springBoot.saveMe.model.enums.UploadSessionStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository per l'accesso e la manipolazione delle sessioni di upload a blocchi.
+ */
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    /**
+     * Trova una sessione per id e proprietario.
+     * 
+     * @param id l'id della sessione
+     * @param owner l'utente proprietario
+     * @return un Optional contenente la sessione se trovata
+     */
+    Optional<UploadSession> findByIdAndOwner(String id, User owner);
+    
+    /**
+     * Trova le sessioni scadute.
+     * 
+     * @param now la data/ora attuale
+     * @return una lista di sessioni
+     */
+    List<UploadSession> findByExpiresAtBefore(LocalDateTime now);
+    
+    /**
+     * Prolunga la scadenza di una sessione dopo la ricezione di un blocco.
+     * 
+     * @param id l'id della sessione
+     * @param expiresAt la nuova scadenza
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.expiresAt = :expiresAt WHERE s.id = :id")
+    void extendExpiration(@Param("id") String id, @Param("expiresAt") LocalDateTime expiresAt);
+    
+    /**
+     * Cambia lo stato di una sessione solo se si trova nello stato atteso.
+     * Usato per garantire che una sessione venga confermata una sola volta.
+     * 
+     * @param id l'id della sessione
+     * @param expected lo stato atteso
+     * @param status il nuovo stato
+     * @return il numero di sessioni aggiornate
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.status = :status WHERE s.id = :id AND s.status = :expected")
+    int updateStatus(@Param("id") String id,
+                     @Param("expected") UploadSessionStatus expected,
+                     @Param("status") UploadSessionStatus status);
+}
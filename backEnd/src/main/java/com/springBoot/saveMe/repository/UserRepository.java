@@ -2,6 +2,10 @@ package com.springBoot.saveMe.repository;
 
 import com.springBoot.saveMe.model.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -41,4 +45,24 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * @return true se esiste, false altrimenti
      */
     boolean existsByEmail(String email);
+
+    /**
+     * Legge la versione del contenuto del livello principale di un utente.
+     * 
+     * @param id l'id dell'utente
+     * @return un Optional contenente la versione se l'utente esiste
+     */
+    @Query("SELECT u.rootContentVersion FROM User u WHERE u.id = :id")
+    Optional<Long> findRootContentVersion(@Param("id") Long id);
+
+    /**
+     * Incrementa la versione del contenuto del livello principale di un utente.
+     * 
+     * @param id l'id dell'utente
+     * @return il numero di righe aggiornate
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.rootContentVersion = u.rootContentVersion + 1 WHERE u.id = :id")
+    int incrementRootContentVersion(@Param("id") Long id);
 }
\ No newline at end of file
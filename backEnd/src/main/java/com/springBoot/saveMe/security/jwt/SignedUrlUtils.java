@@ -0,0 +1,121 @@
+package com.springBoot.saveMe.security.jwt;
+
+import com.springBoot.saveMe.model.entity.StoredFile;
+import com.springBoot.saveMe.model.enums.ContentEncoding;
+import com.springBoot.saveMe.model.share.SignedDownload;
+import io.jsonwebtoken.*;
+import io.jsonwebtoken.security.Keys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * Utility per gli URL di download firmati.
+ * L'URL contiene un token firmato con HMAC (HS512) con l'id della condivisione, i metadati
+ * del file e la scadenza: la verifica della firma basta per servire il file, senza
+ * accedere al database. Le revoche vengono gestite a parte con una lista in memoria
+ * degli id di condivisione revocati.
+ * La chiave è distinta da quella dei token di autenticazione: un token di download
+ * non deve mai essere accettato come token JWT di un utente, né viceversa.
+ */
+@Component
+@Slf4j
+public class SignedUrlUtils {
+
+    private static final String AUDIENCE = "download";
+    private static final String FILE_ID = "fid";
+    private static final String STORAGE_PATH = "path";
+    private static final String CONTENT_TYPE = "ct";
+    private static final String FILE_NAME = "name";
+    private static final String SIZE = "size";
+    private static final String CONTENT_ENCODING = "enc";
+    private static final String CONTENT_DIGEST = "dig";
+    private static final String CREATED_AT = "cat";
+
+    @Value("${app.signed-url.secret}")
+    private String signedUrlSecret;
+
+    /**
+     * Genera il token firmato di un URL di download.
+     *
+     * @param shareId l'id della condivisione che autorizza il download
+     * @param file il file da scaricare
+     * @param expiresAt la scadenza dell'URL
+     * @return il token firmato
+     */
+    public String sign(Long shareId, StoredFile file, LocalDateTime expiresAt) {
+        JwtBuilder builder = Jwts.builder()
+                .setSubject(String.valueOf(shareId))
+                .setAudience(AUDIENCE)
+                .claim(FILE_ID, file.getId())
+                .claim(STORAGE_PATH, file.getStoragePath())
+                .claim(CONTENT_TYPE, file.getContentType())
+                .claim(FILE_NAME, file.getOriginalFileName())
+                .claim(SIZE, file.getSize())
+                .claim(CONTENT_ENCODING, file.getContentEncoding() != null
+                        ? file.getContentEncoding().name() : ContentEncoding.IDENTITY.name())
+                .claim(CREATED_AT, toEpochMillis(file.getCreatedAt()))
+                .setIssuedAt(new Date())
+                .setExpiration(Date.from(expiresAt.atZone(ZoneId.systemDefault()).toInstant()));
+        if (file.getContentDigest() != null) {
+            builder.claim(CONTENT_DIGEST, file.getContentDigest());
+        }
+        return builder.signWith(getSigningKey(), SignatureAlgorithm.HS512).compact();
+    }
+
+    /**
+     * Verifica la firma e la scadenza di un token di download.
+     *
+     * @param token il token firmato
+     * @return il contenuto del token se valido
+     */
+    public Optional<SignedDownload> verify(String token) {
+        try {
+            Claims claims = Jwts.parserBuilder()
+                    .setSigningKey(getSigningKey())
+                    .requireAudience(AUDIENCE)
+                    .build()
+                    .parseClaimsJws(token)
+                    .getBody();
+            return Optional.of(SignedDownload.builder()
+                    .shareId(Long.valueOf(claims.getSubject()))
+                    .fileId(claims.get(FILE_ID, Long.class))
+                    .storagePath(claims.get(STORAGE_PATH, String.class))
+                    .contentType(claims.get(CONTENT_TYPE, String.class))
+                    .originalFileName(claims.get(FILE_NAME, String.class))
+                    .size(claims.get(SIZE, Long.class))
+                    .contentEncoding(ContentEncoding.valueOf(claims.get(CONTENT_ENCODING, String.class)))
+                    .contentDigest(claims.get(CONTENT_DIGEST, String.class))
+                    .createdAt(LocalDateTime.ofInstant(
+                            Instant.ofEpochMilli(claims.get(CREATED_AT, Long.class)), ZoneId.systemDefault()))
+                    .build());
+        } catch (ExpiredJwtException e) {
+            log.error("URL firmato scaduto: {}", e.getMessage());
+        } catch (JwtException | IllegalArgumentException | NullPointerException e) {
+            log.error("URL firmato non valido: {}", e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Genera la chiave di firma utilizzando il segreto degli URL firmati.
+     *
+     * @return la chiave di firma
+     */
+    private Key getSigningKey() {
+        byte[] keyBytes = signedUrlSecret.getBytes(StandardCharsets.UTF_8);
+        return Keys.hmacShaKeyFor(keyBytes);
+    }
+}
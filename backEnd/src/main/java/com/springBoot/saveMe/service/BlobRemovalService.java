@@ -0,0 +1,51 @@
+package com.springBoot.saveMe.service;
+
+import com.springBoot.saveMe.model.entity.BlobRemoval;
+import com.springBoot.saveMe.repository.BlobRemovalRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Servizio che smaltisce in background la coda dei contenuti da rimuovere dal disco.
+ * Le eliminazioni massive (ad esempio di un intero albero di cartelle) accodano i contenuti
+ * rilasciati nella stessa transazione: la richiesta non attende la rimozione dei file
+ * e la coda sopravvive a un riavvio dell'applicazione.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BlobRemovalService {
+
+    private final BlobRemovalRepository blobRemovalRepository;
+    private final FileStorageService fileStorageService;
+
+    @Value("${app.file.blob-removal.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Rimuove dal disco i contenuti in coda, a blocchi, fino a svuotare la coda.
+     */
+    @Scheduled(fixedDelayString = "${app.file.blob-removal.interval-ms:5000}")
+    public void processQueue() {
+        int removed = 0;
+        List<BlobRemoval> batch;
+        do {
+            batch = blobRemovalRepository.findOldest(PageRequest.of(0, batchSize));
+            for (BlobRemoval removal : batch) {
+                fileStorageService.removeReleased(removal.getStoragePath(), removal.getContentDigest());
+            }
+            blobRemovalRepository.deleteAllInBatch(batch);
+            removed += batch.size();
+        } while (batch.size() == batchSize);
+
+        if (removed > 0) {
+            log.info("Contenuti rimossi dalla coda: {}", removed);
+        }
+    }
+}
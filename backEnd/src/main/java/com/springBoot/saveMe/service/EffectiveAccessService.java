@@ -0,0 +1,166 @@
+package com.springBoot.saveMe.service;
+
+import com.springBoot.saveMe.model.entity.Folder;
+import com.springBoot.saveMe.model.entity.SharePermission;
+import com.springBoot.saveMe.model.enums.ResourceType;
+import com.springBoot.saveMe.repository.EffectiveFolderAccessRepository;
+import com.springBoot.saveMe.repository.FolderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Servizio per l'indice degli accessi effettivi alle cartelle condivise.
+ * La condivisione di una cartella dà accesso a tutto il suo sottoalbero: l'indice contiene
+ * una riga per utente e cartella raggiungibile, così la verifica di un accesso è una sola
+ * lettura sulla chiave invece di una risalita degli antenati. L'indice viene aggiornato
+ * nella stessa transazione delle condivisioni e delle operazioni sulle cartelle;
+ * le eliminazioni di cartelle e utenti lo ripuliscono tramite ON DELETE CASCADE.
+ * Le condivisioni bloccano la riga della cartella condivisa, così si serializzano con la creazione
+ * e lo spostamento di cartelle nel suo sottoalbero, che bloccano gli antenati aggiornandone i contatori;
+ * un job periodico ricalcola comunque l'indice dalle condivisioni e corregge le eventuali divergenze.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EffectiveAccessService {
+
+    private final EffectiveFolderAccessRepository effectiveFolderAccessRepository;
+    private final FolderRepository folderRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Verifica se un utente ha accesso condiviso a una cartella.
+     *
+     * @param folderId l'ID della cartella
+     * @param userId l'ID dell'utente
+     * @return true se l'utente ha accesso, false altrimenti
+     */
+    @Transactional(readOnly = true)
+    public boolean hasFolderAccess(Long folderId, Long userId) {
+        return effectiveFolderAccessRepository.hasFolderAccess(folderId, userId);
+    }
+
+    /**
+     * Verifica se un utente ha accesso condiviso a un file, diretto o ereditato dalle cartelle.
+     *
+     * @param fileId l'ID del file
+     * @param userId l'ID dell'utente
+     * @return true se l'utente ha accesso, false altrimenti
+     */
+    @Transactional(readOnly = true)
+    public boolean hasFileAccess(Long fileId, Long userId) {
+        return effectiveFolderAccessRepository.hasFileAccess(fileId, userId);
+    }
+
+    /**
+     * Registra una nuova condivisione. Solo le condivisioni di cartelle con un utente
+     * entrano nell'indice.
+     *
+     * @param permission la condivisione creata
+     */
+    @Transactional
+    public void shareCreated(SharePermission permission) {
+        if (isIndexed(permission)) {
+            folderRepository.lockPaths(List.of(permission.getResourceId()));
+            effectiveFolderAccessRepository.adjustGrant(
+                    permission.getSharedWithUser().getId(), permission.getResourceId(), 1);
+        }
+    }
+
+    /**
+     * Registra la revoca di una condivisione.
+     *
+     * @param permission la condivisione revocata
+     */
+    @Transactional
+    public void shareRemoved(SharePermission permission) {
+        if (isIndexed(permission)) {
+            folderShareRemoved(permission.getSharedWithUser().getId(), permission.getResourceId());
+        }
+    }
+
+    /**
+     * Registra la revoca della condivisione di una cartella con un utente.
+     *
+     * @param userId l'ID dell'utente destinatario
+     * @param folderId l'ID della cartella condivisa
+     */
+    @Transactional
+    public void folderShareRemoved(Long userId, Long folderId) {
+        folderRepository.lockPaths(List.of(folderId));
+        effectiveFolderAccessRepository.adjustGrant(userId, folderId, -1);
+        effectiveFolderAccessRepository.deleteRevoked(folderId);
+    }
+
+    /**
+     * Registra la creazione di una cartella: eredita gli accessi della cartella genitore.
+     *
+     * @param folder la cartella creata
+     * @param parentFolder la cartella genitore (null per il livello principale)
+     */
+    @Transactional
+    public void folderAdded(Folder folder, Folder parentFolder) {
+        if (parentFolder != null) {
+            effectiveFolderAccessRepository.adjustInherited(parentFolder.getId(), folder.getId(), 1);
+        }
+    }
+
+    /**
+     * Registra lo spostamento di una cartella con tutto il suo contenuto: il sottoalbero perde
+     * gli accessi ereditati dalla vecchia cartella genitore e acquista quelli della nuova.
+     * Le condivisioni interne al sottoalbero si spostano con esso e non cambiano.
+     *
+     * @param folder la cartella spostata
+     * @param previousParent la cartella genitore precedente (può essere null)
+     * @param newParent la nuova cartella genitore (può essere null)
+     */
+    @Transactional
+    public void subtreeMoved(Folder folder, Folder previousParent, Folder newParent) {
+        if (previousParent != null) {
+            effectiveFolderAccessRepository.adjustInherited(previousParent.getId(), folder.getId(), -1);
+        }
+        if (newParent != null) {
+            effectiveFolderAccessRepository.adjustInherited(newParent.getId(), folder.getId(), 1);
+        }
+        if (previousParent != null) {
+            effectiveFolderAccessRepository.deleteRevoked(folder.getId());
+        }
+    }
+
+    /**
+     * Ricalcola periodicamente l'indice dalle condivisioni di cartelle e corregge le righe divergenti.
+     * Ogni utente viene elaborato in una transazione separata, dopo aver bloccato le sue cartelle:
+     * le condivisioni e le operazioni sulle cartelle in corso vengono attese, quelle successive
+     * attendono la fine del ricalcolo.
+     */
+    @Scheduled(initialDelayString = "${app.effective-access.repair-initial-delay-ms:900000}",
+               fixedDelayString = "${app.effective-access.repair-interval-ms:86400000}")
+    public void repairIndex() {
+        int repaired = 0;
+        for (Long ownerId : folderRepository.findOwnerIds()) {
+            try {
+                repaired += transactionTemplate.execute(status -> {
+                    folderRepository.lockOwnerFolders(ownerId);
+                    return effectiveFolderAccessRepository.repairOwnerAccess(ownerId);
+                });
+            } catch (RuntimeException e) {
+                log.error("Errore durante il ricalcolo degli accessi alle cartelle dell'utente {}: {}",
+                        ownerId, e.getMessage());
+            }
+        }
+
+        if (repaired > 0) {
+            log.warn("Accessi effettivi alle cartelle divergenti corretti: {}", repaired);
+        }
+    }
+
+    private static boolean isIndexed(SharePermission permission) {
+        return permission.getResourceType() == ResourceType.FOLDER && permission.getSharedWithUser() != null;
+    }
+}
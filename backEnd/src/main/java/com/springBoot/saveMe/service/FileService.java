@@ -1,21 +1,38 @@
 package com.springBoot.saveMe.service;
 
+import com.springBoot.saveMe.dto.file.BatchUploadResultDto;
 import com.springBoot.saveMe.dto.file.FileResponseDto;
 import com.springBoot.saveMe.model.entity.Folder;
 import com.springBoot.saveMe.model.entity.StoredFile;
 import com.springBoot.saveMe.model.entity.User;
 import com.springBoot.saveMe.model.enums.ResourceType;
+import com.springBoot.saveMe.model.listing.KeysetPage;
+import com.springBoot.saveMe.model.listing.ListingQuery;
+import com.springBoot.saveMe.model.storage.StagedBlob;
+import com.springBoot.saveMe.model.storage.StoredBlob;
 import com.springBoot.saveMe.repository.FolderRepository;
+import com.springBoot.saveMe.repository.ListingSpecifications;
 import com.springBoot.saveMe.repository.StoredFileRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -31,6 +48,15 @@ public class FileService {
     private final FolderRepository folderRepository;
     private final FileStorageService fileStorageService;
     private final PermissionService permissionService;
+    private final TransactionTemplate transactionTemplate;
+    private final ListingVersionService listingVersionService;
+    private final FolderStatsService folderStatsService;
+
+    @Value("${app.file.batch-upload.max-files:500}")
+    private int batchMaxFiles;
+
+    @Value("${app.file.batch-upload.parallelism:4}")
+    private int batchParallelism;
 
     /**
      * Carica un nuovo file nel sistema.
@@ -41,30 +67,264 @@ public class FileService {
      * @return i metadati del file caricato
      * @throws IOException se si verifica un errore durante il caricamento
      */
-    @Transactional
     public StoredFile uploadFile(MultipartFile file, Long folderId, User owner) throws IOException {
-        // Salva il file nel file system
-        String storedFileName = fileStorageService.storeFile(file);
-        
-        // Trova la cartella se specificata
-        Folder folder = null;
-        if (folderId != null) {
-            folder = folderRepository.findByIdAndOwner(folderId, owner)
-                    .orElseThrow(() -> new RuntimeException("Cartella non trovata o non autorizzata"));
+        try (InputStream inputStream = file.getInputStream()) {
+            return uploadStream(inputStream, file.getOriginalFilename(), file.getContentType(), folderId, owner);
         }
-        
-        // Crea il record del file nel database
-        StoredFile storedFile = StoredFile.builder()
-                .fileName(storedFileName)
-                .originalFileName(file.getOriginalFilename())
-                .contentType(file.getContentType())
-                .size(file.getSize())
-                .storagePath(storedFileName)
+    }
+
+    /**
+     * Carica un nuovo file leggendo il contenuto da un flusso.
+     * Il contenuto viene scritto su disco in un solo passaggio prima di aprire la transazione,
+     * così una connessione al database non resta occupata per tutta la durata dell'upload.
+     *
+     * @param inputStream il flusso con il contenuto del file
+     * @param originalFileName il nome originale del file
+     * @param declaredContentType il content type dichiarato dal client (può essere null)
+     * @param folderId l'ID della cartella (può essere null)
+     * @param owner l'utente proprietario
+     * @return i metadati del file caricato
+     * @throws IOException se si verifica un errore durante il caricamento
+     */
+    public StoredFile uploadStream(InputStream inputStream, String originalFileName, String declaredContentType,
+                                   Long folderId, User owner) throws IOException {
+        // Verifica la cartella prima di ricevere il contenuto
+        if (folderId != null && folderRepository.findByIdAndOwner(folderId, owner).isEmpty()) {
+            throw new RuntimeException("Cartella non trovata o non autorizzata");
+        }
+
+        StagedBlob staged = fileStorageService.stage(inputStream, originalFileName, declaredContentType);
+        return storeStagedFile(staged, folderId, owner);
+    }
+
+    /**
+     * Registra un contenuto già scritto su disco come nuovo file dell'utente.
+     * Il contenuto temporaneo viene scartato se la registrazione fallisce.
+     *
+     * @param staged il contenuto temporaneo
+     * @param folderId l'ID della cartella (può essere null)
+     * @param owner l'utente proprietario
+     * @return i metadati del file registrato
+     * @throws IOException se si verifica un errore durante il salvataggio
+     */
+    public StoredFile storeStagedFile(StagedBlob staged, Long folderId, User owner) throws IOException {
+        try {
+            return transactionTemplate.execute(status -> {
+                // Trova la cartella se specificata
+                Folder folder = null;
+                if (folderId != null) {
+                    folder = folderRepository.findByIdAndOwner(folderId, owner)
+                            .orElseThrow(() -> new RuntimeException("Cartella non trovata o non autorizzata"));
+                }
+
+                // Salva il contenuto nello storage (deduplicato per digest)
+                StoredBlob blob;
+                try {
+                    blob = fileStorageService.commit(staged);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                // Crea il record del file nel database
+                StoredFile storedFile = fileRepository.save(toStoredFile(staged, blob, owner, folder));
+                listingVersionService.touch(folder, owner);
+                folderStatsService.filesAdded(folder, storedFile.getSize(), 1);
+                return storedFile;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            // Dopo il commit il file temporaneo è già stato spostato: qui resta solo in caso di errore
+            fileStorageService.discard(staged);
+        }
+    }
+
+    /**
+     * Carica più file in una sola richiesta.
+     * Utente e cartella vengono verificati una sola volta; i contenuti vengono scritti su disco
+     * in parallelo e i record registrati in un'unica transazione, con insert raggruppati in batch JDBC.
+     * Un file che non può essere letto o registrato non blocca gli altri: ogni contenuto viene registrato
+     * in un savepoint, annullato da solo in caso di errore, e l'esito è riportato per ciascun file.
+     * Solo un errore nel salvataggio finale dei record (ad esempio una cartella eliminata nel frattempo)
+     * annulla l'intero caricamento: in quel caso tutti i file non ancora in errore riportano la causa.
+     *
+     * @param files i file da caricare
+     * @param folderId l'ID della cartella (può essere null)
+     * @param owner l'utente proprietario
+     * @return l'esito di ciascun file, nello stesso ordine della richiesta
+     */
+    public List<BatchUploadResultDto> uploadBatch(List<MultipartFile> files, Long folderId, User owner) {
+        if (files.isEmpty()) {
+            throw new RuntimeException("Nessun file da caricare");
+        }
+        if (files.size() > batchMaxFiles) {
+            throw new RuntimeException("Troppi file nella richiesta: il massimo è " + batchMaxFiles);
+        }
+        if (folderId != null && folderRepository.findByIdAndOwner(folderId, owner).isEmpty()) {
+            throw new RuntimeException("Cartella non trovata o non autorizzata");
+        }
+
+        StagedBlob[] staged = new StagedBlob[files.size()];
+        String[] errors = new String[files.size()];
+        try {
+            stageConcurrently(files, staged, errors);
+
+            // I contenuti vengono registrati in ordine di digest: due upload concorrenti con contenuti
+            // in comune prendono i lock dei digest nello stesso ordine e non possono bloccarsi a vicenda
+            List<Integer> pending = new ArrayList<>();
+            for (int i = 0; i < staged.length; i++) {
+                if (staged[i] != null) {
+                    pending.add(i);
+                }
+            }
+            pending.sort(Comparator.comparing(i -> staged[i].getDigest()));
+
+            StoredFile[] stored = new StoredFile[files.size()];
+            if (!pending.isEmpty()) {
+                try {
+                    storeStagedBatch(staged, pending, stored, errors, folderId, owner);
+                } catch (RuntimeException e) {
+                    log.error("Errore durante il salvataggio dell'upload multiplo: {}", e.getMessage());
+                    for (int i : pending) {
+                        stored[i] = null;
+                        if (errors[i] == null) {
+                            errors[i] = "Caricamento annullato: errore durante la registrazione dei file ("
+                                    + e.getMessage() + ")";
+                        }
+                    }
+                }
+            }
+
+            List<BatchUploadResultDto> results = new ArrayList<>(files.size());
+            for (int i = 0; i < files.size(); i++) {
+                String originalFileName = files.get(i).getOriginalFilename();
+                if (errors[i] != null) {
+                    results.add(BatchUploadResultDto.builder()
+                            .originalFileName(originalFileName)
+                            .success(false)
+                            .error(errors[i])
+                            .build());
+                } else {
+                    results.add(BatchUploadResultDto.builder()
+                            .originalFileName(originalFileName)
+                            .success(true)
+                            .file(convertToDto(stored[i]))
+                            .build());
+                }
+            }
+            return results;
+        } finally {
+            for (StagedBlob blob : staged) {
+                if (blob != null) {
+                    fileStorageService.discard(blob);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scrive su disco i contenuti dei file in parallelo.
+     * Il calcolo del digest e l'eventuale compressione occupano la CPU: con più thread
+     * il tempo complessivo si avvicina a quello del file più grande.
+     */
+    private void stageConcurrently(List<MultipartFile> files, StagedBlob[] staged, String[] errors) {
+        List<Future<StagedBlob>> futures;
+        // close() attende il termine di tutti i caricamenti, anche in caso di interruzione
+        try (ExecutorService executor = Executors.newFixedThreadPool(Math.min(batchParallelism, files.size()))) {
+            futures = files.stream()
+                    .map(file -> executor.submit(() -> stageMultipart(file)))
+                    .toList();
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            Future<StagedBlob> future = futures.get(i);
+            switch (future.state()) {
+                case SUCCESS -> staged[i] = future.resultNow();
+                case FAILED -> {
+                    log.error("Errore durante l'upload del file {}: {}",
+                            files.get(i).getOriginalFilename(), future.exceptionNow().getMessage());
+                    errors[i] = "Errore durante la lettura del file";
+                }
+                default -> errors[i] = "Upload interrotto";
+            }
+        }
+    }
+
+    private StagedBlob stageMultipart(MultipartFile file) throws IOException {
+        try (InputStream inputStream = file.getInputStream()) {
+            return fileStorageService.stage(inputStream, file.getOriginalFilename(), file.getContentType());
+        }
+    }
+
+    /**
+     * Registra più contenuti già scritti su disco in un'unica transazione.
+     * Ogni contenuto viene registrato in un savepoint: un errore annulla solo quel contenuto
+     * e viene riportato per il file corrispondente. Gli ID vengono riservati a blocchi dalla sequenza,
+     * quindi saveAll non esegue un insert per volta e Hibernate li invia in batch al momento del flush.
+     *
+     * @param staged i contenuti temporanei, nelle posizioni della richiesta
+     * @param order le posizioni da registrare, nell'ordine di registrazione
+     * @param stored i file registrati, nelle posizioni della richiesta
+     * @param errors gli errori, nelle posizioni della richiesta
+     */
+    private void storeStagedBatch(StagedBlob[] staged, List<Integer> order, StoredFile[] stored, String[] errors,
+                                  Long folderId, User owner) {
+        TransactionTemplate savepoint = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        savepoint.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Folder folder = null;
+            if (folderId != null) {
+                folder = folderRepository.findByIdAndOwner(folderId, owner)
+                        .orElseThrow(() -> new RuntimeException("Cartella non trovata o non autorizzata"));
+            }
+
+            List<Integer> committed = new ArrayList<>(order.size());
+            List<StoredFile> storedFiles = new ArrayList<>(order.size());
+            for (int i : order) {
+                StagedBlob blob = staged[i];
+                try {
+                    StoredBlob storedBlob = savepoint.execute(nested -> {
+                        try {
+                            return fileStorageService.commit(blob);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    storedFiles.add(toStoredFile(blob, storedBlob, owner, folder));
+                    committed.add(i);
+                } catch (RuntimeException e) {
+                    log.error("Errore durante il salvataggio del file {}: {}",
+                            blob.getOriginalFileName(), e.getMessage());
+                    errors[i] = "Errore durante il salvataggio del file";
+                }
+            }
+            if (storedFiles.isEmpty()) {
+                return;
+            }
+
+            List<StoredFile> saved = fileRepository.saveAll(storedFiles);
+            listingVersionService.touch(folder, owner);
+            folderStatsService.filesAdded(folder, saved.stream().mapToLong(StoredFile::getSize).sum(), saved.size());
+            for (int k = 0; k < committed.size(); k++) {
+                stored[committed.get(k)] = saved.get(k);
+            }
+        });
+    }
+
+    private static StoredFile toStoredFile(StagedBlob staged, StoredBlob blob, User owner, Folder folder) {
+        return StoredFile.builder()
+                .fileName(blob.getFileName())
+                .originalFileName(staged.getOriginalFileName())
+                .contentType(staged.getContentType())
+                .size(blob.getSize())
+                .physicalSize(blob.getPhysicalSize())
+                .contentEncoding(blob.getContentEncoding())
+                .storagePath(blob.getStoragePath())
+                .contentDigest(blob.getDigest())
                 .owner(owner)
                 .folder(folder)
                 .build();
-        
-        return fileRepository.save(storedFile);
     }
 
     /**
@@ -99,26 +359,58 @@ public class FileService {
     @Transactional(readOnly = true)
     public Resource downloadFile(Long fileId, User user) throws IOException {
         StoredFile file = getFile(fileId, user);
-        return fileStorageService.loadFileAsResource(file.getFileName());
+        return fileStorageService.loadFileAsResource(file.getStoragePath());
     }
 
     /**
-     * Ottiene tutti i file di un utente, opzionalmente filtrati per cartella.
+     * Ottiene una pagina dei file di un utente, opzionalmente filtrati per cartella,
+     * ordinata e filtrata secondo i parametri richiesti.
      *
      * @param user l'utente proprietario
      * @param folderId l'ID della cartella (può essere null)
-     * @return la lista dei file
+     * @param query ordinamento, filtri e cursore della pagina
+     * @return la pagina dei file
      */
     @Transactional(readOnly = true)
-    public List<StoredFile> getUserFiles(User user, Long folderId) {
+    public KeysetPage<FileResponseDto> getUserFiles(User user, Long folderId, ListingQuery query) {
+        Folder folder = null;
         if (folderId != null) {
-            Folder folder = folderRepository.findByIdAndOwner(folderId, user)
+            folder = folderRepository.findByIdAndOwner(folderId, user)
                     .orElseThrow(() -> new RuntimeException("Cartella non trovata o non autorizzata"));
-            
-            return fileRepository.findByOwnerAndFolder(user, folder);
-        } else {
-            return fileRepository.findByOwnerAndFolderIsNull(user);
         }
+        return getFolderFiles(user, folder, query);
+    }
+
+    /**
+     * Ottiene una pagina dei file di una cartella già verificata dal chiamante.
+     * I DTO vengono letti direttamente dalla query, con il proprietario in join.
+     *
+     * @param owner il proprietario della cartella
+     * @param folder la cartella (null per il livello principale del proprietario)
+     * @param query ordinamento, filtri e cursore della pagina
+     * @return la pagina dei file
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<FileResponseDto> getFolderFiles(User owner, Folder folder, ListingQuery query) {
+        Specification<StoredFile> filter = (root, q, cb) -> cb.and(
+                cb.equal(root.get("owner"), owner),
+                folder != null ? cb.equal(root.get("folder"), folder) : cb.isNull(root.get("folder")));
+        if (query.getContentType() != null && !query.getContentType().isBlank()) {
+            String contentType = query.getContentType().trim();
+            filter = filter.and((root, q, cb) -> contentType.endsWith("/*")
+                    ? cb.like(root.get("contentType"), contentType.substring(0, contentType.length() - 1) + "%")
+                    : cb.equal(root.get("contentType"), contentType));
+        }
+        filter = filter.and(ListingSpecifications.createdBetween(query.getCreatedAfter(), query.getCreatedBefore()));
+
+        return switch (query.getSort()) {
+            case NAME -> KeysetPagination.fetch(fileRepository::findListing, filter, query,
+                    "originalFileName", FileResponseDto::getOriginalFileName, FileResponseDto::getId);
+            case SIZE -> KeysetPagination.fetch(fileRepository::findListing, filter, query,
+                    "size", FileResponseDto::getSize, FileResponseDto::getId);
+            case CREATED_AT -> KeysetPagination.fetch(fileRepository::findListing, filter, query,
+                    "createdAt", FileResponseDto::getCreatedAt, FileResponseDto::getId);
+        };
     }
 
     /**
@@ -138,9 +430,13 @@ public class FileService {
         
         // Elimina il file dal database
         fileRepository.delete(file);
+        listingVersionService.touch(file.getFolder(), user);
+        folderStatsService.filesRemoved(file.getFolder(), file.getSize(), 1);
         
-        // Elimina il file dal file system
-        return fileStorageService.deleteFile(file.getFileName());
+        // Rilascia il contenuto: il blob viene rimosso dal disco dopo il commit
+        // solo se nessun altro file lo referenzia
+        fileStorageService.releaseFile(file.getStoragePath(), file.getContentDigest());
+        return true;
     }
 
     /**
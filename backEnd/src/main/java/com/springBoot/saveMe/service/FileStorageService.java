@@ -1,98 +1,833 @@
 package com.springBoot.saveMe.service;
 
+import com.springBoot.saveMe.model.entity.ContentBlob;
+import com.springBoot.saveMe.model.enums.ContentEncoding;
+import com.springBoot.saveMe.model.enums.StorageLayout;
+import com.springBoot.saveMe.model.enums.StorageMode;
+import com.springBoot.saveMe.model.storage.StagedBlob;
+import com.springBoot.saveMe.model.storage.StoredBlob;
+import com.springBoot.saveMe.repository.BlobRemovalRepository;
+import com.springBoot.saveMe.repository.ContentBlobRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
+import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Servizio per la gestione dello storage dei file.
  * Si occupa di salvare, recuperare ed eliminare file dal file system.
+ * In modalità CONTENT_ADDRESSED i contenuti identici vengono salvati una sola volta,
+ * indicizzati per digest SHA-256 e con un conteggio dei riferimenti.
+ * Con il layout SHARDED i blob sono distribuiti in sottodirectory (ab/cd/nome);
+ * le letture cercano il file in entrambi i layout, così restano valide
+ * durante la migrazione da un layout all'altro.
+ * I content type comprimibili (testo, JSON, XML...) vengono salvati compressi con gzip.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class FileStorageService {
 
+    private static final String TEMP_DIR = ".tmp";
+    private static final String CHUNKS_DIR = ".uploads";
+    private static final Pattern CHUNK_FILE = Pattern.compile("(\\d+)\\.part");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int SNIFF_BYTES = 16;
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+
+    private final ContentBlobRepository blobRepository;
+    private final BlobRemovalRepository blobRemovalRepository;
+    private final PlatformTransactionManager transactionManager;
+
     @Value("${app.file.upload-dir}")
     private String uploadDir;
 
+    @Value("${app.file.storage-mode:CONTENT_ADDRESSED}")
+    private StorageMode storageMode;
+
+    @Value("${app.file.layout:FLAT}")
+    private StorageLayout storageLayout;
+
+    @Value("${app.file.download.zero-copy:true}")
+    private boolean zeroCopyEnabled;
+
+    @Value("${app.file.download.zero-copy-min-size:49152}")
+    private long zeroCopyMinSize;
+
+    @Value("${app.file.compression.enabled:true}")
+    private boolean compressionEnabled;
+
+    @Value("${app.file.compression.content-types:text/*,application/json,application/xml,application/javascript}")
+    private String compressibleContentTypes;
+
+    /**
+     * Scrive un flusso di dati in un file temporaneo, senza accedere al database.
+     * Dimensione, digest SHA-256 e content type vengono calcolati durante la scrittura,
+     * così il contenuto attraversa il disco una sola volta e la memoria usata resta costante.
+     * I content type comprimibili vengono compressi con gzip durante la stessa scrittura;
+     * digest e dimensione si riferiscono sempre al contenuto originale.
+     *
+     * @param inputStream il flusso di dati da salvare
+     * @param originalFilename il nome originale del file
+     * @param declaredContentType il content type dichiarato dal client (può essere null)
+     * @return il contenuto temporaneo, da confermare con commit o scartare con discard
+     * @throws IOException se si verifica un errore durante la scrittura
+     */
+    public StagedBlob stage(InputStream inputStream, String originalFilename, String declaredContentType)
+            throws IOException {
+        MessageDigest messageDigest = newSha256();
+        Path tempFile = createTempFile();
+        String contentType;
+        ContentEncoding contentEncoding;
+        long size;
+        long physicalSize;
+        try (BufferedInputStream buffered = new BufferedInputStream(inputStream, BUFFER_SIZE);
+             DigestInputStream digestStream = new DigestInputStream(buffered, messageDigest)) {
+            contentType = resolveContentType(declaredContentType, detectContentType(buffered, originalFilename));
+            contentEncoding = isCompressible(contentType) ? ContentEncoding.GZIP : ContentEncoding.IDENTITY;
+            size = writeEncoded(digestStream, tempFile, contentEncoding);
+            physicalSize = Files.size(tempFile);
+
+            // Se la compressione non riduce la dimensione il contenuto viene salvato originale
+            if (contentEncoding != ContentEncoding.IDENTITY && physicalSize >= size) {
+                transcode(tempFile, contentEncoding, ContentEncoding.IDENTITY);
+                contentEncoding = ContentEncoding.IDENTITY;
+                physicalSize = size;
+            }
+        } catch (IOException ex) {
+            Files.deleteIfExists(tempFile);
+            throw ex;
+        }
+
+        return StagedBlob.builder()
+                .tempFile(tempFile)
+                .originalFileName(originalFilename)
+                .digest(HexFormat.of().formatHex(messageDigest.digest()))
+                .size(size)
+                .physicalSize(physicalSize)
+                .contentEncoding(contentEncoding)
+                .contentType(contentType)
+                .build();
+    }
+
     /**
-     * Salva un file nel sistema di storage.
+     * Registra un contenuto temporaneo nello storage e lo sposta nella posizione definitiva.
+     * Deve essere invocato all'interno della transazione che registra il file:
+     * in caso di rollback il contenuto scritto viene rimosso.
      *
-     * @param file il file da salvare
-     * @return il nome generato del file salvato
+     * @param staged il contenuto temporaneo
+     * @return il blob salvato
      * @throws IOException se si verifica un errore durante il salvataggio
      */
-    public String storeFile(MultipartFile file) throws IOException {
-        // Normalizza il nome del file
-        String originalFilename = StringUtils.cleanPath(file.getOriginalFilename());
-        
-        // Genera un nome univoco per il file
-        String fileName = UUID.randomUUID().toString() + "_" + originalFilename;
-        
-        // Crea la directory se non esiste
-        Path uploadPath = getUploadPath();
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
+    @Transactional
+    public StoredBlob commit(StagedBlob staged) throws IOException {
+        if (storageMode == StorageMode.CONTENT_ADDRESSED) {
+            return storeContentAddressed(staged);
+        }
+        return storeUnique(staged);
+    }
+
+    /**
+     * Scarta un contenuto temporaneo non più necessario.
+     *
+     * @param staged il contenuto temporaneo
+     */
+    public void discard(StagedBlob staged) {
+        try {
+            Files.deleteIfExists(staged.getTempFile());
+        } catch (IOException ex) {
+            log.error("Errore durante l'eliminazione del file temporaneo: {}", staged.getTempFile(), ex);
+        }
+    }
+
+    /**
+     * Salva un blocco di una sessione di upload.
+     * Il blocco viene scritto in un file temporaneo e reso visibile con una rinomina atomica,
+     * così blocchi inviati in parallelo o ritrasmessi non lasciano mai file parziali.
+     *
+     * @param sessionId l'ID della sessione
+     * @param index l'indice del blocco
+     * @param inputStream il contenuto del blocco
+     * @param expectedLength la lunghezza attesa del blocco
+     * @throws IOException se si verifica un errore durante la scrittura
+     */
+    public void writeChunk(String sessionId, int index, InputStream inputStream, long expectedLength) throws IOException {
+        Path chunkDir = getChunkDirectory(sessionId);
+        Files.createDirectories(chunkDir);
+        Path tempFile = chunkDir.resolve(index + ".part." + UUID.randomUUID());
+
+        try {
+            long written;
+            try (InputStream buffered = new BufferedInputStream(inputStream, BUFFER_SIZE)) {
+                // Legge al massimo un byte oltre la lunghezza attesa per riconoscere i blocchi troppo lunghi
+                written = Files.copy(new LimitedInputStream(buffered, expectedLength + 1), tempFile);
+            }
+            if (written != expectedLength) {
+                throw new IllegalArgumentException("Lunghezza del blocco " + index + " non valida: attesi "
+                        + expectedLength + " byte, ricevuti " + written);
+            }
+            Files.move(tempFile, chunkDir.resolve(index + ".part"),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Elenca gli indici dei blocchi già ricevuti per una sessione.
+     *
+     * @param sessionId l'ID della sessione
+     * @return gli indici dei blocchi completi, in ordine crescente
+     * @throws IOException se si verifica un errore durante la lettura della directory
+     */
+    public SortedSet<Integer> listChunks(String sessionId) throws IOException {
+        SortedSet<Integer> chunks = new TreeSet<>();
+        Path chunkDir = getChunkDirectory(sessionId);
+        if (!Files.isDirectory(chunkDir)) {
+            return chunks;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(chunkDir)) {
+            for (Path entry : entries) {
+                Matcher matcher = CHUNK_FILE.matcher(entry.getFileName().toString());
+                if (matcher.matches()) {
+                    chunks.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Assembla i blocchi di una sessione in un unico contenuto temporaneo,
+     * leggendoli in sequenza e calcolando digest e content type come per un upload diretto.
+     *
+     * @param sessionId l'ID della sessione
+     * @param chunkCount il numero di blocchi
+     * @param originalFilename il nome originale del file
+     * @param declaredContentType il content type dichiarato dal client (può essere null)
+     * @return il contenuto temporaneo assemblato
+     * @throws IOException se si verifica un errore durante l'assemblaggio
+     */
+    public StagedBlob stageChunks(String sessionId, int chunkCount, String originalFilename, String declaredContentType)
+            throws IOException {
+        Path chunkDir = getChunkDirectory(sessionId);
+        Enumeration<InputStream> chunks = new Enumeration<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasMoreElements() {
+                return next < chunkCount;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    return Files.newInputStream(chunkDir.resolve(next++ + ".part"));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+
+        try (InputStream assembled = new SequenceInputStream(chunks)) {
+            return stage(assembled, originalFilename, declaredContentType);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Elimina tutti i blocchi di una sessione.
+     *
+     * @param sessionId l'ID della sessione
+     */
+    public void deleteChunks(String sessionId) {
+        Path chunkDir = getChunkDirectory(sessionId);
+        if (!Files.isDirectory(chunkDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(chunkDir)) {
+            for (Path entry : entries) {
+                Files.deleteIfExists(entry);
+            }
+            Files.deleteIfExists(chunkDir);
+        } catch (IOException ex) {
+            log.error("Errore durante l'eliminazione dei blocchi della sessione: {}", sessionId, ex);
+        }
+    }
+
+    /**
+     * Elenca le sessioni che hanno blocchi su disco non modificati dopo l'istante indicato.
+     *
+     * @param olderThan l'istante di riferimento
+     * @return gli ID delle sessioni
+     * @throws IOException se si verifica un errore durante la lettura della directory
+     */
+    public List<String> listChunkSessions(Instant olderThan) throws IOException {
+        List<String> sessionIds = new ArrayList<>();
+        Path chunksRoot = getUploadPath().resolve(CHUNKS_DIR);
+        if (!Files.isDirectory(chunksRoot)) {
+            return sessionIds;
         }
-        
-        // Copia il file nella directory di destinazione
-        Path targetLocation = uploadPath.resolve(fileName);
-        Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-        
-        log.info("File salvato: {}", fileName);
-        return fileName;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(chunksRoot, Files::isDirectory)) {
+            for (Path entry : entries) {
+                if (Files.getLastModifiedTime(entry).toInstant().isBefore(olderThan)) {
+                    sessionIds.add(entry.getFileName().toString());
+                }
+            }
+        }
+        return sessionIds;
     }
 
     /**
      * Carica un file come risorsa.
      *
-     * @param fileName il nome del file da caricare
+     * @param storagePath il percorso relativo del file da caricare
      * @return la risorsa del file
      * @throws IOException se si verifica un errore durante il caricamento
      */
-    public Resource loadFileAsResource(String fileName) throws IOException {
+    public Resource loadFileAsResource(String storagePath) throws IOException {
         try {
-            Path filePath = getUploadPath().resolve(fileName).normalize();
+            Path filePath = resolveExisting(storagePath);
             Resource resource = new UrlResource(filePath.toUri());
-            
+
             if (resource.exists()) {
                 return resource;
             } else {
-                throw new IOException("File non trovato: " + fileName);
+                throw new IOException("File non trovato: " + storagePath);
             }
         } catch (MalformedURLException ex) {
-            throw new IOException("File non trovato: " + fileName, ex);
+            throw new IOException("File non trovato: " + storagePath, ex);
+        }
+    }
+
+    /**
+     * Apre il contenuto originale di un file, decomprimendolo durante la lettura se necessario.
+     *
+     * @param storagePath il percorso relativo del file
+     * @param contentEncoding la codifica con cui il file è salvato
+     * @return il flusso del contenuto originale
+     * @throws IOException se il file non esiste o non può essere letto
+     */
+    public InputStream openDecodedStream(String storagePath, ContentEncoding contentEncoding) throws IOException {
+        return decode(Files.newInputStream(resolveLocalFile(storagePath)), contentEncoding);
+    }
+
+    /**
+     * Indica se un file di questa dimensione può essere servito in modalità zero-copy,
+     * cioè trasferito dal file system al socket senza passare dall'heap della JVM.
+     * Sotto la soglia minima il costo della syscall dedicata non viene ripagato.
+     *
+     * @param size la dimensione del file in byte
+     * @return true se la modalità zero-copy è attiva e applicabile
+     */
+    public boolean isZeroCopyEligible(long size) {
+        return zeroCopyEnabled && size >= zeroCopyMinSize;
+    }
+
+    /**
+     * Risolve il percorso assoluto di un file sul disco locale.
+     *
+     * @param storagePath il percorso relativo del file
+     * @return il percorso assoluto del file
+     * @throws IOException se il file non esiste
+     */
+    public Path resolveLocalFile(String storagePath) throws IOException {
+        Path filePath = resolveExisting(storagePath);
+        if (!Files.isRegularFile(filePath)) {
+            throw new IOException("File non trovato: " + storagePath);
+        }
+        return filePath;
+    }
+
+    /**
+     * Trasferisce una porzione di un file verso un canale con {@link FileChannel#transferTo}.
+     * Verso un socket il kernel copia i dati direttamente (sendfile), altrimenti
+     * il JDK usa un buffer diretto senza allocazioni sull'heap per ogni blocco.
+     *
+     * @param file il file da trasferire
+     * @param position la posizione iniziale
+     * @param count il numero di byte da trasferire
+     * @param target il canale di destinazione
+     * @return il numero di byte trasferiti
+     * @throws IOException se si verifica un errore durante il trasferimento
+     */
+    public long transferTo(Path file, long position, long count, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long transferred = 0;
+            while (transferred < count) {
+                long written = channel.transferTo(position + transferred, count - transferred, target);
+                if (written <= 0) {
+                    break;
+                }
+                transferred += written;
+            }
+            return transferred;
+        }
+    }
+
+    /**
+     * Rilascia il contenuto di un file eliminato dal database.
+     * Per i blob content-addressed decrementa il conteggio dei riferimenti e
+     * rimuove il blob dal disco solo dopo il commit, se non è più referenziato.
+     * I file non deduplicati vengono eliminati dopo il commit.
+     *
+     * @param storagePath il percorso relativo del file
+     * @param contentDigest il digest del contenuto (può essere null)
+     */
+    @Transactional
+    public void releaseFile(String storagePath, String contentDigest) {
+        if (isContentAddressed(storagePath, contentDigest) && blobRepository.decrementReference(contentDigest) > 0) {
+            TransactionHooks.afterCommit(() -> deleteBlobIfUnreferenced(contentDigest, storagePath));
+        } else {
+            TransactionHooks.afterCommit(() -> deleteFile(storagePath));
+        }
+    }
+
+    /**
+     * Rilascia in blocco il contenuto di tutti i file delle cartelle indicate, prima che
+     * vengano eliminati dal database. I riferimenti ai blob vengono decrementati con un solo
+     * aggiornamento raggruppato per digest e i contenuti accodati per la rimozione in background.
+     *
+     * @param folderIds gli id delle cartelle
+     * @return il numero di contenuti accodati per la rimozione
+     */
+    @Transactional
+    public int releaseFilesInFolders(Collection<Long> folderIds) {
+        int queued = blobRemovalRepository.enqueueFilesInFolders(folderIds);
+        blobRepository.decrementReferencesInFolders(folderIds);
+        return queued;
+    }
+
+    /**
+     * Rimuove dal disco un contenuto rilasciato in precedenza.
+     * Un blob content-addressed viene rimosso solo se nel frattempo non è stato referenziato di nuovo.
+     *
+     * @param storagePath il percorso relativo del file
+     * @param contentDigest il digest del contenuto (può essere null)
+     */
+    public void removeReleased(String storagePath, String contentDigest) {
+        if (isContentAddressed(storagePath, contentDigest)) {
+            deleteBlobIfUnreferenced(contentDigest, storagePath);
+        } else {
+            deleteFile(storagePath);
         }
     }
 
     /**
      * Elimina un file dal sistema di storage.
      *
-     * @param fileName il nome del file da eliminare
+     * @param storagePath il percorso relativo del file da eliminare
      * @return true se l'eliminazione ha avuto successo, false altrimenti
      */
-    public boolean deleteFile(String fileName) {
+    public boolean deleteFile(String storagePath) {
         try {
-            Path filePath = getUploadPath().resolve(fileName).normalize();
+            Path filePath = resolveExisting(storagePath);
             return Files.deleteIfExists(filePath);
         } catch (IOException ex) {
-            log.error("Errore durante l'eliminazione del file: {}", fileName, ex);
+            log.error("Errore durante l'eliminazione del file: {}", storagePath, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Ottiene il layout con cui vengono salvati i nuovi blob.
+     *
+     * @return il layout corrente
+     */
+    public StorageLayout getStorageLayout() {
+        return storageLayout;
+    }
+
+    /**
+     * Calcola il percorso relativo di un blob secondo il layout corrente.
+     *
+     * @param fileName il nome del blob
+     * @return il percorso relativo alla directory di upload
+     */
+    public String storagePathFor(String fileName) {
+        return storageLayout == StorageLayout.SHARDED ? shardedPath(fileName) : fileName;
+    }
+
+    /**
+     * Sposta un blob dal percorso indicato al percorso previsto dal layout corrente.
+     *
+     * @param storagePath il percorso relativo attuale
+     * @return il nuovo percorso relativo, oppure empty se il file non esiste su disco
+     * @throws IOException se si verifica un errore durante lo spostamento
+     */
+    public Optional<String> relocate(String storagePath) throws IOException {
+        String targetPath = storagePathFor(Paths.get(storagePath).getFileName().toString());
+        Path source = resolve(storagePath);
+        Path target = resolve(targetPath);
+
+        if (Files.exists(source)) {
+            Files.createDirectories(target.getParent());
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } else if (!Files.exists(target)) {
+            return Optional.empty();
+        }
+        return Optional.of(targetPath);
+    }
+
+    /**
+     * Registra un riferimento al blob e lo sposta nella posizione definitiva.
+     * Il file temporaneo sostituisce sempre quello esistente: il contenuto è identico
+     * e la rinomina atomica evita finestre in cui il blob manca dal disco.
+     * Un blob già esistente mantiene la sua codifica, a cui viene adeguato il nuovo contenuto.
+     */
+    private StoredBlob storeContentAddressed(StagedBlob staged) throws IOException {
+        String digest = staged.getDigest();
+        String storagePath = storagePathFor(digest);
+        blobRepository.lockDigest(digest);
+        blobRepository.incrementReference(digest, staged.getSize(), staged.getPhysicalSize(),
+                staged.getContentEncoding().name());
+        ContentBlob blob = blobRepository.findById(digest)
+                .orElseThrow(() -> new IllegalStateException("Blob non registrato: " + digest));
+        if (blob.getContentEncoding() != staged.getContentEncoding()) {
+            transcode(staged.getTempFile(), staged.getContentEncoding(), blob.getContentEncoding());
+        }
+        moveIntoPlace(staged.getTempFile(), resolve(storagePath));
+        TransactionHooks.afterRollback(() -> deleteBlobIfUnreferenced(digest, storagePath));
+
+        log.info("Blob salvato: {} ({} byte, {} su disco)", digest, staged.getSize(), blob.getPhysicalSize());
+        return StoredBlob.builder()
+                .fileName(digest)
+                .storagePath(storagePath)
+                .digest(digest)
+                .size(staged.getSize())
+                .physicalSize(blob.getPhysicalSize())
+                .contentEncoding(blob.getContentEncoding())
+                .build();
+    }
+
+    /**
+     * Sposta il contenuto in un file con nome univoco, come per la modalità storica.
+     */
+    private StoredBlob storeUnique(StagedBlob staged) throws IOException {
+        // Genera un nome univoco per il file
+        String fileName = UUID.randomUUID().toString() + "_" + safeFileName(staged.getOriginalFileName());
+        String storagePath = storagePathFor(fileName);
+        moveIntoPlace(staged.getTempFile(), resolve(storagePath));
+        TransactionHooks.afterRollback(() -> deleteFile(storagePath));
+
+        log.info("File salvato: {}", storagePath);
+        return StoredBlob.builder()
+                .fileName(fileName)
+                .storagePath(storagePath)
+                .digest(staged.getDigest())
+                .size(staged.getSize())
+                .physicalSize(staged.getPhysicalSize())
+                .contentEncoding(staged.getContentEncoding())
+                .build();
+    }
+
+    /**
+     * Elimina dal disco un blob il cui conteggio dei riferimenti è arrivato a zero.
+     * Se il blob è ancora referenziato non fa nulla.
+     * Riga e file vengono rimossi in una nuova transazione che detiene il lock del digest:
+     * un upload concorrente dello stesso contenuto attende il commit e poi ricrea riga e file.
+     */
+    private void deleteBlobIfUnreferenced(String digest, String storagePath) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            transaction.executeWithoutResult(status -> {
+                blobRepository.lockDigest(digest);
+                if (blobRepository.deleteIfUnreferenced(digest) > 0 || !blobRepository.existsById(digest)) {
+                    deleteFile(storagePath);
+                    log.info("Blob rimosso: {}", digest);
+                }
+            });
+        } catch (RuntimeException ex) {
+            log.error("Errore durante la rimozione del blob: {}", digest, ex);
+        }
+    }
+
+    /**
+     * Un file è content-addressed se il nome del blob su disco coincide con il digest del contenuto.
+     */
+    private boolean isContentAddressed(String storagePath, String contentDigest) {
+        return contentDigest != null && contentDigest.equals(Paths.get(storagePath).getFileName().toString());
+    }
+
+    private void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.createDirectories(target.getParent());
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            Files.deleteIfExists(source);
+            throw ex;
+        }
+    }
+
+    /**
+     * Sceglie il content type del file: quello dichiarato dal client se specifico,
+     * altrimenti quello rilevato dal contenuto.
+     */
+    private static String resolveContentType(String declaredContentType, String detectedContentType) {
+        if (StringUtils.hasText(declaredContentType)
+                && !MediaType.APPLICATION_OCTET_STREAM_VALUE.equalsIgnoreCase(declaredContentType)) {
+            return declaredContentType;
+        }
+        return detectedContentType != null ? detectedContentType : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    }
+
+    /**
+     * Verifica se il content type rientra nella politica di compressione configurata.
+     */
+    private boolean isCompressible(String contentType) {
+        if (!compressionEnabled) {
+            return false;
+        }
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            return MediaType.parseMediaTypes(compressibleContentTypes).stream()
+                    .anyMatch(compressible -> compressible.includes(mediaType));
+        } catch (InvalidMediaTypeException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Scrive un flusso in un file applicando la codifica indicata.
+     *
+     * @return il numero di byte letti dal flusso (dimensione del contenuto originale)
+     */
+    private static long writeEncoded(InputStream inputStream, Path target, ContentEncoding contentEncoding)
+            throws IOException {
+        if (contentEncoding == ContentEncoding.IDENTITY) {
+            return Files.copy(inputStream, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(target), BUFFER_SIZE)) {
+            return inputStream.transferTo(outputStream);
+        }
+    }
+
+    private static InputStream decode(InputStream inputStream, ContentEncoding contentEncoding) throws IOException {
+        if (contentEncoding == ContentEncoding.GZIP) {
+            return new GZIPInputStream(inputStream, BUFFER_SIZE);
+        }
+        return inputStream;
+    }
+
+    /**
+     * Converte un file da una codifica all'altra, sostituendolo al termine della conversione.
+     */
+    private void transcode(Path file, ContentEncoding from, ContentEncoding to) throws IOException {
+        Path transcoded = createTempFile();
+        try {
+            try (InputStream inputStream = decode(Files.newInputStream(file), from)) {
+                writeEncoded(inputStream, transcoded, to);
+            }
+            Files.move(transcoded, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            Files.deleteIfExists(transcoded);
+            throw ex;
+        }
+    }
+
+    /**
+     * Rileva il content type dai primi byte del flusso (senza consumarli)
+     * e, se non riconosciuto, dall'estensione del nome del file.
+     */
+    private static String detectContentType(BufferedInputStream inputStream, String originalFilename) throws IOException {
+        inputStream.mark(SNIFF_BYTES);
+        byte[] head = inputStream.readNBytes(SNIFF_BYTES);
+        inputStream.reset();
+
+        String sniffed = sniffMagicNumber(head);
+        if (sniffed == null) {
+            sniffed = URLConnection.guessContentTypeFromStream(new ByteArrayInputStream(head));
+        }
+        if (sniffed == null && originalFilename != null) {
+            sniffed = URLConnection.guessContentTypeFromName(originalFilename);
+        }
+        return sniffed;
+    }
+
+    private static String sniffMagicNumber(byte[] head) {
+        if (startsWith(head, '%', 'P', 'D', 'F')) {
+            return "application/pdf";
+        }
+        if (startsWith(head, 'P', 'K', 0x03, 0x04)) {
+            return "application/zip";
+        }
+        if (startsWith(head, 0x1f, 0x8b)) {
+            return "application/gzip";
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] head, int... prefix) {
+        if (head.length < prefix.length) {
             return false;
         }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((head[i] & 0xff) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Path getChunkDirectory(String sessionId) {
+        return getUploadPath().resolve(CHUNKS_DIR).resolve(sessionId).normalize();
+    }
+
+    /**
+     * Flusso che restituisce al massimo un numero prefissato di byte.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+
+    private Path createTempFile() throws IOException {
+        Path tempDir = getUploadPath().resolve(TEMP_DIR);
+        Files.createDirectories(tempDir);
+        return tempDir.resolve(UUID.randomUUID() + ".part");
+    }
+
+    /**
+     * Risolve un percorso relativo alla directory di upload, rifiutando i percorsi che ne escono.
+     */
+    private Path resolve(String storagePath) {
+        Path uploadPath = getUploadPath();
+        Path path = uploadPath.resolve(storagePath).normalize();
+        if (!path.startsWith(uploadPath)) {
+            throw new RuntimeException("Percorso non valido: " + storagePath);
+        }
+        return path;
+    }
+
+    /**
+     * Riduce il nome originale del file al suo ultimo componente, senza separatori
+     * né riferimenti alla directory: il nome dichiarato dal client non deve poter
+     * indicare un percorso fuori dalla directory di upload.
+     */
+    private static String safeFileName(String originalFileName) {
+        String name = originalFileName != null ? originalFileName : "";
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+        if (name.isBlank() || name.equals(".") || name.equals("..")) {
+            throw new RuntimeException("Nome file non valido: " + originalFileName);
+        }
+        return name;
+    }
+
+    /**
+     * Risolve il percorso di un blob cercandolo anche nell'altro layout,
+     * nel caso in cui il migratore lo abbia già spostato.
+     */
+    private Path resolveExisting(String storagePath) {
+        Path path = resolve(storagePath);
+        if (Files.exists(path)) {
+            return path;
+        }
+        String fileName = path.getFileName().toString();
+        for (String candidate : List.of(fileName, shardedPath(fileName))) {
+            Path alternative = resolve(candidate);
+            if (Files.exists(alternative)) {
+                return alternative;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Percorso a due livelli ricavato dal prefisso dell'hash: per i blob content-addressed
+     * si usa il digest stesso, per gli altri nomi il loro SHA-256.
+     */
+    private static String shardedPath(String fileName) {
+        String hash = SHA256_HEX.matcher(fileName).matches() ? fileName : sha256Hex(fileName);
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + fileName;
+    }
+
+    private static String sha256Hex(String value) {
+        return HexFormat.of().formatHex(newSha256().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Algoritmo SHA-256 non disponibile", ex);
+        }
     }
 
     /**
@@ -103,4 +838,4 @@ public class FileStorageService {
     private Path getUploadPath() {
         return Paths.get(uploadDir).toAbsolutePath().normalize();
     }
-}
\ No newline at end of file
+}
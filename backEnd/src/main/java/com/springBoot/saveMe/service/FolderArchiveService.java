@@ -0,0 +1,249 @@
+package com.springBoot.saveMe.service;
+
+import com.springBoot.saveMe.model.enums.ContentEncoding;
+import com.springBoot.saveMe.model.projection.ArchiveEntryView;
+import com.springBoot.saveMe.model.projection.ArchiveFolderView;
+import com.springBoot.saveMe.repository.FolderRepository;
+import com.springBoot.saveMe.repository.StoredFileRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Servizio per la creazione di archivi ZIP di intere cartelle.
+ * Il sottoalbero viene letto a blocchi per chiave, ciascuno in una transazione breve:
+ * durante l'invio non resta occupata alcuna connessione al database, anche con client lenti.
+ * L'archivio viene scritto direttamente sul flusso di risposta, un file alla volta: la memoria
+ * usata non dipende dalla dimensione dei file (resta solo la directory centrale dello ZIP,
+ * pochi byte per voce). I contenuti già compressi vengono archiviati con il metodo STORED
+ * per risparmiare CPU.
+ * Non essendo letto da un'unica istantanea, un archivio di un sottoalbero modificato durante
+ * l'invio può includere o meno le modifiche concorrenti.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FolderArchiveService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_NAME_ATTEMPTS = 1000;
+
+    private final FolderRepository folderRepository;
+    private final StoredFileRepository fileRepository;
+    private final FileStorageService fileStorageService;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${app.file.archive.stored-content-types:image/jpeg,image/png,image/gif,image/webp,video/*,audio/*,application/zip,application/gzip}")
+    private String storedContentTypes;
+
+    @Value("${app.file.archive.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Cartella aperta durante la visita: percorso materializzato e percorso nell'archivio.
+     */
+    private record OpenFolder(String path, String entryPath) {
+    }
+
+    /**
+     * Scrive l'archivio ZIP del sottoalbero di una cartella.
+     * L'accesso alla cartella deve essere già stato verificato dal chiamante.
+     * Non va invocato all'interno di una transazione: ogni blocco viene letto nella propria.
+     *
+     * @param folderId l'ID della cartella radice dell'archivio
+     * @param outputStream il flusso su cui scrivere l'archivio
+     * @throws IOException se si verifica un errore durante la scrittura
+     */
+    public void writeArchive(Long folderId, OutputStream outputStream) throws IOException {
+        List<MediaType> storedTypes = MediaType.parseMediaTypes(storedContentTypes);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+
+        // Cartelle aperte, dalla radice dell'archivio al ramo corrente
+        Deque<OpenFolder> openFolders = new ArrayDeque<>();
+        String afterPath = "";
+        List<ArchiveFolderView> folders;
+        do {
+            String after = afterPath;
+            folders = transaction.execute(status -> folderRepository.findArchiveFolders(folderId, after, batchSize));
+            for (ArchiveFolderView folder : folders) {
+                while (!openFolders.isEmpty() && !folder.getPath().startsWith(openFolders.peek().path())) {
+                    openFolders.pop();
+                }
+                String name = entryName(folder.getName());
+                String parentPath = openFolders.isEmpty() ? "" : openFolders.peek().entryPath() + "/";
+                // Cartelle sorelle possono avere lo stesso nome: il nome reso univoco vale anche per il contenuto
+                String entryName = putUniqueEntry(zip, new ZipEntry(parentPath + name + "/"));
+                zip.closeEntry();
+                String entryPath = entryName.substring(0, entryName.length() - 1);
+                openFolders.push(new OpenFolder(folder.getPath(), entryPath));
+
+                if (folder.getDirectFileCount() > 0) {
+                    writeFolderFiles(zip, transaction, folder.getId(), entryPath, storedTypes);
+                }
+                afterPath = folder.getPath();
+            }
+        } while (folders.size() == batchSize);
+
+        zip.finish();
+        zip.flush();
+    }
+
+    /**
+     * Aggiunge all'archivio i file diretti di una cartella, letti a blocchi in ordine di nome.
+     */
+    private void writeFolderFiles(ZipOutputStream zip, TransactionTemplate transaction, Long folderId,
+                                  String entryPath, List<MediaType> storedTypes) throws IOException {
+        String afterName = "";
+        Long afterId = 0L;
+        List<ArchiveEntryView> rows;
+        do {
+            String name = afterName;
+            Long id = afterId;
+            rows = transaction.execute(status -> fileRepository.findArchiveEntries(folderId, name, id, batchSize));
+            for (ArchiveEntryView row : rows) {
+                writeFile(zip, entryPath, row, isAlreadyCompressed(row.getContentType(), storedTypes));
+                afterName = row.getOriginalFileName();
+                afterId = row.getId();
+            }
+        } while (rows.size() == batchSize);
+    }
+
+    /**
+     * Aggiunge un file all'archivio. Con il metodo STORED dimensione e CRC devono essere
+     * noti prima dei dati, quindi il contenuto viene letto una prima volta per calcolarli.
+     * Un file mancante sul disco viene saltato: gli header della risposta sono già stati inviati.
+     */
+    private void writeFile(ZipOutputStream zip, String entryPath, ArchiveEntryView row, boolean stored)
+            throws IOException {
+        ContentEncoding contentEncoding = ContentEncoding.valueOf(row.getContentEncoding());
+        ZipEntry entry = newEntry(entryPath, row);
+        InputStream inputStream;
+        try {
+            if (stored) {
+                CRC32 crc = new CRC32();
+                long size;
+                try (CheckedInputStream checked = new CheckedInputStream(
+                        fileStorageService.openDecodedStream(row.getStoragePath(), contentEncoding), crc)) {
+                    size = checked.transferTo(OutputStream.nullOutputStream());
+                }
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(size);
+                entry.setCompressedSize(size);
+                entry.setCrc(crc.getValue());
+            }
+            inputStream = fileStorageService.openDecodedStream(row.getStoragePath(), contentEncoding);
+        } catch (IOException ex) {
+            log.error("File {} escluso dall'archivio: {}", row.getStoragePath(), ex.getMessage());
+            return;
+        }
+
+        try (inputStream) {
+            putUniqueEntry(zip, entry);
+            inputStream.transferTo(zip);
+        }
+        zip.closeEntry();
+    }
+
+    private static ZipEntry newEntry(String entryPath, ArchiveEntryView row) {
+        ZipEntry entry = new ZipEntry(entryPath + "/" + entryName(row.getOriginalFileName()));
+        if (row.getCreatedAtMillis() != null) {
+            entry.setTimeLocal(LocalDateTime.ofEpochSecond(
+                    Math.floorDiv(row.getCreatedAtMillis(), 1000), 0, ZoneOffset.UTC));
+        }
+        return entry;
+    }
+
+    /**
+     * Nome di un file o di una cartella all'interno dell'archivio: un solo segmento di percorso.
+     * I separatori vengono sostituiti e i nomi "." e ".." riscritti, così nessuna voce
+     * può uscire dalla cartella di estrazione.
+     */
+    private static String entryName(String name) {
+        String segment = name.replace('/', '_').replace('\\', '_');
+        if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+            return "_".repeat(Math.max(1, segment.length()));
+        }
+        return segment;
+    }
+
+    /**
+     * Aggiunge la voce all'archivio; se nella cartella esiste già un file o una cartella con lo stesso
+     * nome aggiunge un suffisso numerico, come "nome (2).txt" o "nome (2)/".
+     *
+     * @return il nome con cui la voce è stata aggiunta
+     */
+    private String putUniqueEntry(ZipOutputStream zip, ZipEntry entry) throws IOException {
+        String name = entry.getName();
+        ZipEntry candidate = entry;
+        for (int attempt = 2; ; attempt++) {
+            try {
+                zip.putNextEntry(candidate);
+                return candidate.getName();
+            } catch (ZipException ex) {
+                if (!ex.getMessage().startsWith("duplicate entry") || attempt > MAX_NAME_ATTEMPTS) {
+                    throw ex;
+                }
+                candidate = withName(entry, suffixedName(name, attempt));
+            }
+        }
+    }
+
+    private static ZipEntry withName(ZipEntry source, String name) {
+        ZipEntry renamed = new ZipEntry(name);
+        if (source.getMethod() != -1) {
+            renamed.setMethod(source.getMethod());
+        }
+        if (source.getMethod() == ZipEntry.STORED) {
+            renamed.setSize(source.getSize());
+            renamed.setCompressedSize(source.getCompressedSize());
+            renamed.setCrc(source.getCrc());
+        }
+        if (source.getLastModifiedTime() != null) {
+            renamed.setTimeLocal(source.getTimeLocal());
+        }
+        return renamed;
+    }
+
+    private static String suffixedName(String name, int attempt) {
+        if (name.endsWith("/")) {
+            return name.substring(0, name.length() - 1) + " (" + attempt + ")/";
+        }
+        int slash = name.lastIndexOf('/');
+        int dot = name.lastIndexOf('.');
+        if (dot <= slash + 1) {
+            return name + " (" + attempt + ")";
+        }
+        return name.substring(0, dot) + " (" + attempt + ")" + name.substring(dot);
+    }
+
+    private static boolean isAlreadyCompressed(String contentType, List<MediaType> storedTypes) {
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            return storedTypes.stream().anyMatch(type -> type.includes(mediaType));
+        } catch (InvalidMediaTypeException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.springBoot.saveMe.service;
+
+import com.springBoot.saveMe.dto.file.FileResponseDto;
+import com.springBoot.saveMe.dto.folder.FolderContentsDto;
+import com.springBoot.saveMe.dto.folder.FolderResponseDto;
+import com.springBoot.saveMe.model.entity.Folder;
+import com.springBoot.saveMe.model.entity.User;
+import com.springBoot.saveMe.model.listing.FolderContents;
+import com.springBoot.saveMe.model.listing.KeysetPage;
+import com.springBoot.saveMe.model.listing.ListingQuery;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.function.Predicate;
+
+/**
+ * Servizio per il contenuto di una cartella (sottocartelle e file) in una sola richiesta.
+ * L'accesso viene verificato una volta sola e le due pagine vengono lette nella stessa transazione,
+ * quindi sono coerenti tra loro.
+ */
+@Service
+@RequiredArgsConstructor
+public class FolderContentsService {
+
+    private final FolderService folderService;
+    private final FileService fileService;
+    private final ListingVersionService listingVersionService;
+
+    /**
+     * Ottiene la prima pagina delle sottocartelle e dei file di una cartella o del livello principale.
+     * Per una cartella condivisa vengono elencati i contenuti del proprietario.
+     *
+     * @param folderId l'ID della cartella (null per il livello principale dell'utente)
+     * @param user l'utente che richiede il contenuto
+     * @param folderQuery ordinamento, filtri e cursore delle sottocartelle
+     * @param fileQuery ordinamento, filtri e cursore dei file
+     * @param notModified verifica se il client possiede già la versione con l'ETag indicato
+     * @return l'ETag e il contenuto, senza contenuto se il client ha già la versione corrente
+     */
+    @Transactional(readOnly = true)
+    public FolderContents getContents(Long folderId, User user, ListingQuery folderQuery, ListingQuery fileQuery,
+                                      Predicate<String> notModified) {
+        Folder folder = null;
+        User owner = user;
+        String etag;
+        if (folderId != null) {
+            folder = folderService.getFolder(folderId, user);
+            owner = folder.getOwner();
+            etag = listingVersionService.getListingETag("contents", folder);
+        } else {
+            etag = listingVersionService.getListingETag("contents", null, user);
+        }
+
+        if (notModified.test(etag)) {
+            return new FolderContents(etag, null);
+        }
+
+        return new FolderContents(etag, readContents(owner, folder, folderQuery, fileQuery));
+    }
+
+    /**
+     * Ottiene una pagina delle sottocartelle e dei file di una cartella già verificata dal chiamante,
+     * ad esempio tramite un link pubblico.
+     *
+     * @param folder la cartella
+     * @param folderQuery ordinamento, filtri e cursore delle sottocartelle
+     * @param fileQuery ordinamento, filtri e cursore dei file
+     * @return il contenuto della cartella
+     */
+    @Transactional(readOnly = true)
+    public FolderContentsDto getContents(Folder folder, ListingQuery folderQuery, ListingQuery fileQuery) {
+        return readContents(folder.getOwner(), folder, folderQuery, fileQuery);
+    }
+
+    private FolderContentsDto readContents(User owner, Folder folder, ListingQuery folderQuery, ListingQuery fileQuery) {
+        KeysetPage<FolderResponseDto> folders = folderService.getSubfolders(owner, folder, folderQuery);
+        KeysetPage<FileResponseDto> files = fileService.getFolderFiles(owner, folder, fileQuery);
+        return FolderContentsDto.builder()
+                .folder(folder != null ? folderService.convertToDto(folder) : null)
+                .folders(folders.getItems())
+                .files(files.getItems())
+                .nextFolderCursor(folders.getNextCursor())
+                .nextFileCursor(files.getNextCursor())
+                .build();
+    }
+}
@@ -2,17 +2,24 @@ package com.springBoot.saveMe.service;
 
 import com.springBoot.saveMe.dto.folder.FolderResponseDto;
 import com.springBoot.saveMe.model.entity.Folder;
-import com.springBoot.saveMe.model.entity.StoredFile;
 import com.springBoot.saveMe.model.entity.User;
 import com.springBoot.saveMe.model.enums.ResourceType;
+import com.springBoot.saveMe.model.listing.KeysetPage;
+import com.springBoot.saveMe.model.listing.ListingQuery;
+import com.springBoot.saveMe.model.projection.FolderPathView;
 import com.springBoot.saveMe.repository.FolderRepository;
+import com.springBoot.saveMe.repository.ListingSpecifications;
+import com.springBoot.saveMe.repository.SharePermissionRepository;
 import com.springBoot.saveMe.repository.StoredFileRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
@@ -27,6 +34,11 @@ public class FolderService {
     private final FolderRepository folderRepository;
     private final StoredFileRepository fileRepository;
     private final PermissionService permissionService;
+    private final SharePermissionRepository sharePermissionRepository;
+    private final FileStorageService fileStorageService;
+    private final ListingVersionService listingVersionService;
+    private final FolderStatsService folderStatsService;
+    private final EffectiveAccessService effectiveAccessService;
 
     /**
      * Crea una nuova cartella.
@@ -52,7 +64,12 @@ public class FolderService {
                 .parentFolder(parentFolder)
                 .build();
         
-        return folderRepository.save(folder);
+        folder = folderRepository.save(folder);
+        folderRepository.assignPath(folder.getId());
+        listingVersionService.touch(parentFolder, owner);
+        folderStatsService.folderAdded(parentFolder);
+        effectiveAccessService.folderAdded(folder, parentFolder);
+        return folder;
     }
 
     /**
@@ -66,12 +83,24 @@ public class FolderService {
      */
     @Transactional
     public Folder updateFolder(Long folderId, String name, Long parentFolderId, User user) {
+        if (parentFolderId != null && parentFolderId.equals(folderId)) {
+            throw new RuntimeException("Operazione non valida: la cartella genitore non può essere la cartella stessa o una sua discendente");
+        }
+        
+        // Blocca la cartella e la nuova cartella genitore prima di leggerle: spostamenti concorrenti
+        // dello stesso ramo vengono serializzati e i percorsi letti sono quelli aggiornati
+        Map<Long, String> lockedPaths = folderRepository.lockPaths(
+                        parentFolderId != null ? List.of(folderId, parentFolderId) : List.of(folderId))
+                .stream()
+                .collect(Collectors.toMap(FolderPathView::getId, FolderPathView::getPath));
+        
         // Trova la cartella da aggiornare
         Folder folder = folderRepository.findByIdAndOwner(folderId, user)
                 .orElseThrow(() -> new RuntimeException("Cartella non trovata o non autorizzata"));
         
-        // Verifica che la nuova cartella genitore non sia la cartella stessa o una sua discendente
-        if (parentFolderId != null && (parentFolderId.equals(folderId) || isFolderDescendant(parentFolderId, folderId, user))) {
+        // Verifica che la nuova cartella genitore non sia una discendente della cartella
+        if (parentFolderId != null && lockedPaths.containsKey(parentFolderId)
+                && lockedPaths.get(parentFolderId).startsWith(lockedPaths.get(folderId))) {
             throw new RuntimeException("Operazione non valida: la cartella genitore non può essere la cartella stessa o una sua discendente");
         }
         
@@ -82,11 +111,29 @@ public class FolderService {
                     .orElseThrow(() -> new RuntimeException("Cartella genitore non trovata o non autorizzata"));
         }
         
-        // Aggiorna la cartella
+        // Aggiorna la cartella e gli elenchi della vecchia e della nuova cartella genitore;
+        // anche l'elenco della cartella stessa cambia, perché la descrive (nome e genitore)
+        Folder previousParent = folder.getParentFolder();
         folder.setName(name);
         folder.setParentFolder(parentFolder);
         
-        return folderRepository.save(folder);
+        folder = folderRepository.save(folder);
+        listingVersionService.touch(folder, user);
+        listingVersionService.touch(previousParent, user);
+        if (!Objects.equals(parentFolderId, previousParent != null ? previousParent.getId() : null)) {
+            listingVersionService.touch(parentFolder, user);
+            
+            // Aggiorna il percorso della cartella e di tutto il suo sottoalbero, dai percorsi letti dopo il blocco
+            String oldPath = lockedPaths.get(folder.getId());
+            String newPath = (parentFolder != null ? lockedPaths.get(parentFolder.getId()) : "/") + folder.getId() + "/";
+            if (folderRepository.movePath(oldPath, subtreePathEnd(oldPath), newPath) == 0) {
+                throw new RuntimeException("Spostamento non riuscito: percorso della cartella non aggiornato");
+            }
+            folderStatsService.subtreeMoved(folder, previousParent, parentFolder);
+            effectiveAccessService.subtreeMoved(folder, previousParent, parentFolder);
+            permissionService.invalidateAllDecisions();
+        }
+        return folder;
     }
 
     /**
@@ -111,26 +158,72 @@ public class FolderService {
     }
 
     /**
-     * Ottiene tutte le cartelle di un utente, opzionalmente filtrate per cartella genitore.
+     * Ottiene il percorso di una cartella, dalla cartella di primo livello alla cartella stessa.
+     *
+     * @param folderId l'ID della cartella
+     * @param user l'utente proprietario
+     * @return le cartelle del percorso
+     */
+    @Transactional(readOnly = true)
+    public List<Folder> getBreadcrumb(Long folderId, User user) {
+        List<Folder> breadcrumb = folderRepository.findPathToRoot(folderId, user.getId());
+        if (breadcrumb.isEmpty()) {
+            throw new RuntimeException("Cartella non trovata o non autorizzata");
+        }
+        return breadcrumb;
+    }
+
+    /**
+     * Ottiene una pagina delle cartelle di un utente, opzionalmente filtrate per cartella genitore,
+     * ordinata e filtrata secondo i parametri richiesti. L'ordinamento per dimensione usa
+     * la dimensione totale del sottoalbero.
      *
      * @param user l'utente proprietario
      * @param parentFolderId l'ID della cartella genitore (può essere null)
-     * @return la lista delle cartelle
+     * @param query ordinamento, filtri e cursore della pagina
+     * @return la pagina delle cartelle
      */
     @Transactional(readOnly = true)
-    public List<Folder> getUserFolders(User user, Long parentFolderId) {
+    public KeysetPage<FolderResponseDto> getUserFolders(User user, Long parentFolderId, ListingQuery query) {
+        Folder parentFolder = null;
         if (parentFolderId != null) {
-            Folder parentFolder = folderRepository.findByIdAndOwner(parentFolderId, user)
+            parentFolder = folderRepository.findByIdAndOwner(parentFolderId, user)
                     .orElseThrow(() -> new RuntimeException("Cartella genitore non trovata o non autorizzata"));
-            
-            return folderRepository.findByOwnerAndParentFolder(user, parentFolder);
-        } else {
-            return folderRepository.findByOwnerAndParentFolderIsNull(user);
         }
+        return getSubfolders(user, parentFolder, query);
+    }
+
+    /**
+     * Ottiene una pagina delle sottocartelle di una cartella già verificata dal chiamante.
+     * I DTO vengono letti direttamente dalla query, con il proprietario in join.
+     *
+     * @param owner il proprietario della cartella
+     * @param parentFolder la cartella genitore (null per il livello principale del proprietario)
+     * @param query ordinamento, filtri e cursore della pagina
+     * @return la pagina delle cartelle
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<FolderResponseDto> getSubfolders(User owner, Folder parentFolder, ListingQuery query) {
+        Specification<Folder> filter = (root, q, cb) -> cb.and(
+                cb.equal(root.get("owner"), owner),
+                parentFolder != null ? cb.equal(root.get("parentFolder"), parentFolder) : cb.isNull(root.get("parentFolder")));
+        filter = filter.and(ListingSpecifications.createdBetween(query.getCreatedAfter(), query.getCreatedBefore()));
+
+        return switch (query.getSort()) {
+            case NAME -> KeysetPagination.fetch(folderRepository::findListing, filter, query,
+                    "name", FolderResponseDto::getName, FolderResponseDto::getId);
+            case SIZE -> KeysetPagination.fetch(folderRepository::findListing, filter, query,
+                    "totalSize", FolderResponseDto::getTotalSize, FolderResponseDto::getId);
+            case CREATED_AT -> KeysetPagination.fetch(folderRepository::findListing, filter, query,
+                    "createdAt", FolderResponseDto::getCreatedAt, FolderResponseDto::getId);
+        };
     }
 
     /**
      * Elimina una cartella e tutto il suo contenuto.
+     * Il sottoalbero viene raccolto con una sola query ricorsiva e ripulito con eliminazioni
+     * massive, indipendentemente dal numero di cartelle e file; i contenuti rilasciati
+     * vengono rimossi dal disco in background.
      *
      * @param folderId l'ID della cartella
      * @param user l'utente che richiede l'eliminazione
@@ -140,51 +233,35 @@ public class FolderService {
         Folder folder = folderRepository.findByIdAndOwner(folderId, user)
                 .orElseThrow(() -> new RuntimeException("Cartella non trovata o non autorizzata"));
         
-        // Elimina ricorsivamente tutte le sottocartelle
-        List<Folder> subfolders = folderRepository.findByOwnerAndParentFolder(user, folder);
-        for (Folder subfolder : subfolders) {
-            deleteFolder(subfolder.getId(), user);
-        }
+        listingVersionService.touch(folder.getParentFolder(), user);
         
-        // Elimina tutti i file nella cartella
-        List<StoredFile> files = fileRepository.findByOwnerAndFolder(user, folder);
-        for (StoredFile file : files) {
-            // Elimina le condivisioni del file
-            permissionService.deleteAllSharePermissions(file.getId(), ResourceType.FILE);
-            // Elimina il file dal file system
-            // Non controlliamo il risultato qui perché vogliamo continuare l'eliminazione
-            // anche se un file non può essere eliminato dal file system
-            fileRepository.delete(file);
-        }
+        List<Long> subtreeIds = folderRepository.lockSubtreeIds(folderId);
+        folderStatsService.subtreeRemoved(folder);
+        
+        // Rilascia i contenuti dei file: i riferimenti ai blob vengono decrementati subito,
+        // i file vengono rimossi dal disco dopo il commit
+        int released = fileStorageService.releaseFilesInFolders(subtreeIds);
+        
+        // Elimina le condivisioni e i file del sottoalbero
+        permissionService.revokeSignedUrls(sharePermissionRepository.findPublicLinkIdsInFolders(subtreeIds));
+        sharePermissionRepository.deleteFilePermissionsInFolders(subtreeIds);
+        sharePermissionRepository.deleteFolderPermissions(subtreeIds);
+        permissionService.invalidatePublicLinks();
+        int files = fileRepository.deleteByFolderIds(subtreeIds);
         
-        // Elimina le condivisioni della cartella
-        permissionService.deleteAllSharePermissions(folderId, ResourceType.FOLDER);
+        // Elimina la cartella: le sottocartelle seguono tramite ON DELETE CASCADE
+        folderRepository.deleteTree(folderId);
         
-        // Elimina la cartella
-        folderRepository.delete(folder);
+        log.info("Cartella {} eliminata: {} cartelle, {} file, {} contenuti accodati per la rimozione",
+                folderId, subtreeIds.size(), files, released);
     }
-    
+
     /**
-     * Verifica se una cartella è discendente di un'altra.
-     *
-     * @param possibleDescendantId l'ID della possibile cartella discendente
-     * @param ancestorId l'ID della cartella antenata
-     * @param user l'utente proprietario
-     * @return true se la prima cartella è discendente della seconda
+     * Limite superiore (escluso) dei percorsi del sottoalbero: i percorsi contengono solo cifre e '/',
+     * e nell'ordinamento per byte '0' segue immediatamente '/'.
      */
-    private boolean isFolderDescendant(Long possibleDescendantId, Long ancestorId, User user) {
-        Folder folder = folderRepository.findByIdAndOwner(possibleDescendantId, user)
-                .orElseThrow(() -> new RuntimeException("Cartella non trovata o non autorizzata"));
-        
-        if (folder.getParentFolder() == null) {
-            return false;
-        }
-        
-        if (folder.getParentFolder().getId().equals(ancestorId)) {
-            return true;
-        }
-        
-        return isFolderDescendant(folder.getParentFolder().getId(), ancestorId, user);
+    private static String subtreePathEnd(String path) {
+        return path.substring(0, path.length() - 1) + "0";
     }
 
     /**
@@ -200,6 +277,12 @@ public class FolderService {
                 .ownerId(folder.getOwner().getId())
                 .ownerUsername(folder.getOwner().getUsername())
                 .parentFolderId(folder.getParentFolder() != null ? folder.getParentFolder().getId() : null)
+                .directSize(folder.getDirectSize())
+                .directFileCount(folder.getDirectFileCount())
+                .directFolderCount(folder.getDirectFolderCount())
+                .totalSize(folder.getTotalSize())
+                .totalFileCount(folder.getTotalFileCount())
+                .totalFolderCount(folder.getTotalFolderCount())
                 .createdAt(folder.getCreatedAt())
                 .updatedAt(folder.getUpdatedAt())
                 .build();
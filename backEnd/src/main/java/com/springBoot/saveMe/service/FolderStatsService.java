@@ -0,0 +1,124 @@
+package com.springBoot.saveMe.service;
+
+import com.springBoot.saveMe.model.entity.Folder;
+import com.springBoot.saveMe.repository.FolderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Servizio per i contatori aggregati delle cartelle (byte, file e sottocartelle,
+ * diretti e dell'intero sottoalbero).
+ * I contatori vengono aggiornati in modo incrementale nella stessa transazione delle
+ * operazioni su file e cartelle, con un solo aggiornamento sul percorso degli antenati;
+ * un job periodico li ricalcola e corregge le eventuali divergenze.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FolderStatsService {
+
+    private final FolderRepository folderRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Registra l'aggiunta di file a una cartella.
+     *
+     * @param folder la cartella (null per il livello principale, senza contatori)
+     * @param size la dimensione totale dei file aggiunti
+     * @param count il numero di file aggiunti
+     */
+    @Transactional
+    public void filesAdded(Folder folder, long size, long count) {
+        if (folder != null) {
+            folderRepository.adjustCounters(folder.getId(), size, count, 0);
+        }
+    }
+
+    /**
+     * Registra la rimozione di file da una cartella.
+     *
+     * @param folder la cartella (null per il livello principale, senza contatori)
+     * @param size la dimensione totale dei file rimossi
+     * @param count il numero di file rimossi
+     */
+    @Transactional
+    public void filesRemoved(Folder folder, long size, long count) {
+        if (folder != null) {
+            folderRepository.adjustCounters(folder.getId(), -size, -count, 0);
+        }
+    }
+
+    /**
+     * Registra la creazione di una sottocartella vuota.
+     *
+     * @param parentFolder la cartella genitore (null per il livello principale)
+     */
+    @Transactional
+    public void folderAdded(Folder parentFolder) {
+        if (parentFolder != null) {
+            folderRepository.adjustCounters(parentFolder.getId(), 0, 0, 1);
+        }
+    }
+
+    /**
+     * Registra lo spostamento di una cartella con tutto il suo contenuto.
+     *
+     * @param folder la cartella spostata
+     * @param previousParent la cartella genitore precedente (può essere null)
+     * @param newParent la nuova cartella genitore (può essere null)
+     */
+    @Transactional
+    public void subtreeMoved(Folder folder, Folder previousParent, Folder newParent) {
+        if (previousParent != null) {
+            folderRepository.adjustCountersForSubtree(previousParent.getId(), folder.getId(), -1);
+        }
+        if (newParent != null) {
+            folderRepository.adjustCountersForSubtree(newParent.getId(), folder.getId(), 1);
+        }
+    }
+
+    /**
+     * Registra l'eliminazione di una cartella con tutto il suo contenuto.
+     * Va chiamato prima di eliminare il sottoalbero, i cui totali vengono letti dal database.
+     *
+     * @param folder la cartella da eliminare
+     */
+    @Transactional
+    public void subtreeRemoved(Folder folder) {
+        if (folder.getParentFolder() != null) {
+            folderRepository.adjustCountersForSubtree(folder.getParentFolder().getId(), folder.getId(), -1);
+        }
+    }
+
+    /**
+     * Ricalcola periodicamente i contatori di tutte le cartelle, un utente alla volta,
+     * e corregge quelli che divergono dal contenuto effettivo
+     * (ad esempio dopo operazioni concorrenti sullo stesso ramo o modifiche manuali al database).
+     * Ogni utente viene ricalcolato in una transazione che prima blocca le sue cartelle:
+     * il ricalcolo legge i totali dopo gli aggiornamenti incrementali in corso e non li sovrascrive.
+     */
+    @Scheduled(initialDelayString = "${app.folder-stats.repair-initial-delay-ms:600000}",
+               fixedDelayString = "${app.folder-stats.repair-interval-ms:86400000}")
+    public void repairCounters() {
+        int repaired = 0;
+        for (Long ownerId : folderRepository.findOwnerIds()) {
+            try {
+                repaired += transactionTemplate.execute(status -> {
+                    folderRepository.lockOwnerFolders(ownerId);
+                    return folderRepository.repairCounters(ownerId);
+                });
+            } catch (RuntimeException e) {
+                log.error("Errore durante il ricalcolo dei contatori delle cartelle dell'utente {}: {}",
+                        ownerId, e.getMessage());
+            }
+        }
+
+        if (repaired > 0) {
+            log.warn("Contatori delle cartelle divergenti corretti: {}", repaired);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.springBoot.saveMe.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springBoot.saveMe.model.entity.User;
+import com.springBoot.saveMe.model.projection.FolderTreeNodeView;
+import com.springBoot.saveMe.repository.FolderRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Servizio per l'albero completo delle cartelle di un utente.
+ * L'albero viene letto a blocchi per chiave, ciascuno in una transazione breve, e scritto
+ * in JSON direttamente sul flusso di risposta, una cartella alla volta: in memoria resta
+ * solo il ramo corrente e durante l'invio non resta occupata alcuna connessione al database.
+ */
+@Service
+@RequiredArgsConstructor
+public class FolderTreeService {
+
+    private final FolderRepository folderRepository;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${app.folder-tree.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Scrive l'albero delle cartelle di un utente come array JSON di cartelle di primo livello,
+     * ognuna con le sue sottocartelle annidate in "children".
+     * Non va invocato all'interno di una transazione: ogni blocco viene letto nella propria.
+     *
+     * @param user l'utente proprietario
+     * @param maxDepth la profondità massima (0 per le sole cartelle di primo livello, null per nessun limite)
+     * @param outputStream il flusso su cui scrivere il JSON
+     * @throws IOException se si verifica un errore durante la scrittura
+     */
+    public void writeTree(User user, Integer maxDepth, OutputStream outputStream) throws IOException {
+        int depthLimit = maxDepth != null ? maxDepth : Integer.MAX_VALUE;
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+            // Il flusso di risposta resta al container; in caso di errore il JSON non viene chiuso,
+            // così il client non riceve un albero troncato ma apparentemente valido
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+
+            // ID delle cartelle aperte, dalla radice al ramo corrente
+            Deque<Long> openFolders = new ArrayDeque<>();
+            generator.writeStartArray();
+            String afterPath = "";
+            List<FolderTreeNodeView> nodes;
+            do {
+                String after = afterPath;
+                nodes = transaction.execute(status ->
+                        folderRepository.findTreeBatch(user.getId(), depthLimit, after, batchSize));
+                for (FolderTreeNodeView node : nodes) {
+                    while (!openFolders.isEmpty() && !Objects.equals(openFolders.peek(), node.getParentFolderId())) {
+                        closeNode(generator);
+                        openFolders.pop();
+                    }
+                    writeNodeStart(generator, node);
+                    openFolders.push(node.getId());
+                    afterPath = node.getPath();
+                }
+            } while (nodes.size() == batchSize);
+            while (!openFolders.isEmpty()) {
+                closeNode(generator);
+                openFolders.pop();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private static void writeNodeStart(JsonGenerator generator, FolderTreeNodeView node) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", node.getId());
+        generator.writeStringField("name", node.getName());
+        if (node.getParentFolderId() != null) {
+            generator.writeNumberField("parentFolderId", node.getParentFolderId());
+        } else {
+            generator.writeNullField("parentFolderId");
+        }
+        generator.writeNumberField("folderCount", node.getFolderCount());
+        generator.writeNumberField("fileCount", node.getFileCount());
+        generator.writeNumberField("totalSize", node.getTotalSize());
+        generator.writeArrayFieldStart("children");
+    }
+
+    private static void closeNode(JsonGenerator generator) throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+}
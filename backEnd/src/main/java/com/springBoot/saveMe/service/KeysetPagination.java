@@ -0,0 +1,111 @@
+package com.springBoot.saveMe.service;
+
+import com.springBoot.saveMe.model.enums.ListingSort;
+import com.springBoot.saveMe.model.listing.KeysetPage;
+import com.springBoot.saveMe.model.listing.ListingQuery;
+import com.springBoot.saveMe.repository.ListingSpecifications;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Paginazione per chiave degli elenchi di file e cartelle.
+ * Ogni pagina riparte dalla chiave (valore di ordinamento, id) dell'ultimo elemento della precedente,
+ * quindi il costo non dipende dalla posizione nell'elenco e non serve una query di conteggio.
+ * Il cursore è opaco per il client: contiene l'ordinamento, l'id e il valore dell'ultimo elemento.
+ * Se la richiesta non indica né limite né cursore l'elenco viene restituito per intero,
+ * così i client che non gestiscono la paginazione continuano a ricevere tutti gli elementi.
+ */
+final class KeysetPagination {
+
+    static final int MAX_LIMIT = 1000;
+
+    private KeysetPagination() {
+    }
+
+    /**
+     * Lettura delle righe di una pagina: criteri, ordinamento e numero massimo di righe.
+     */
+    @FunctionalInterface
+    interface PageReader<E, T> {
+        List<T> read(Specification<E> spec, Sort sort, int limit);
+    }
+
+    /**
+     * Legge una pagina di un elenco.
+     *
+     * @param reader la query che legge le righe della pagina
+     * @param filter i criteri dell'elenco (proprietario, cartella, filtri)
+     * @param query i parametri della pagina
+     * @param attribute l'attributo dell'entità corrispondente all'ordinamento richiesto
+     * @param sortValue il valore di ordinamento di un elemento letto
+     * @param idOf l'id di un elemento
+     * @return la pagina con il cursore della pagina successiva (null se l'elenco è completo)
+     */
+    static <E, T> KeysetPage<T> fetch(PageReader<E, T> reader, Specification<E> filter, ListingQuery query,
+                                      String attribute, Function<T, Object> sortValue, Function<T, Long> idOf) {
+        boolean hasCursor = query.getCursor() != null && !query.getCursor().isBlank();
+        Sort sort = ListingSpecifications.keysetSort(attribute, query.isDescending());
+        if (query.getLimit() == null && !hasCursor) {
+            return new KeysetPage<>(reader.read(filter, sort, Integer.MAX_VALUE), null);
+        }
+
+        int limit = query.getLimit() != null ? Math.max(1, Math.min(query.getLimit(), MAX_LIMIT)) : MAX_LIMIT;
+        Specification<E> spec = filter;
+        if (hasCursor) {
+            spec = spec.and(after(attribute, query, query.getCursor()));
+        }
+
+        List<T> rows = reader.read(spec, sort, limit + 1);
+        if (rows.size() <= limit) {
+            return new KeysetPage<>(rows, null);
+        }
+
+        List<T> items = rows.subList(0, limit);
+        T last = items.get(limit - 1);
+        return new KeysetPage<>(items, encode(query.getSort(), idOf.apply(last), sortValue.apply(last)));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E> Specification<E> after(String attribute, ListingQuery query, String cursor) {
+        String[] parts = decode(cursor);
+        if (!parts[0].equals(query.getSort().getToken())) {
+            throw new RuntimeException("Cursore non valido per l'ordinamento richiesto");
+        }
+        try {
+            Long id = Long.valueOf(parts[1]);
+            Comparable value = switch (query.getSort()) {
+                case NAME -> parts[2];
+                case SIZE -> Long.valueOf(parts[2]);
+                case CREATED_AT -> LocalDateTime.parse(parts[2]);
+            };
+            return ListingSpecifications.keysetAfter(attribute, value, id, query.isDescending());
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new RuntimeException("Cursore non valido");
+        }
+    }
+
+    private static String encode(ListingSort sort, Long id, Object value) {
+        String raw = sort.getToken() + ":" + id + ":" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 3);
+            if (parts.length != 3) {
+                throw new RuntimeException("Cursore non valido");
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Cursore non valido");
+        }
+    }
+}
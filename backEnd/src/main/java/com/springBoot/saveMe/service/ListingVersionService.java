@@ -0,0 +1,75 @@
+package com.springBoot.saveMe.service;
+
+import com.springBoot.saveMe.model.entity.Folder;
+import com.springBoot.saveMe.model.entity.User;
+import com.springBoot.saveMe.repository.FolderRepository;
+import com.springBoot.saveMe.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Servizio per le versioni degli elenchi di file e cartelle.
+ * Ogni cartella (e il livello principale di ogni utente) ha un contatore che viene
+ * incrementato a ogni modifica del suo contenuto diretto o della cartella stessa:
+ * il contatore permette di rispondere alle richieste condizionali sugli elenchi senza caricarli.
+ */
+@Service
+@RequiredArgsConstructor
+public class ListingVersionService {
+
+    private final FolderRepository folderRepository;
+    private final UserRepository userRepository;
+
+    /**
+     * Segnala una modifica al contenuto diretto di una cartella.
+     *
+     * @param folder la cartella modificata (null per il livello principale)
+     * @param owner l'utente proprietario
+     */
+    @Transactional
+    public void touch(Folder folder, User owner) {
+        if (folder != null) {
+            folderRepository.incrementContentVersion(folder.getId());
+        } else {
+            userRepository.incrementRootContentVersion(owner.getId());
+        }
+    }
+
+    /**
+     * Calcola l'ETag debole dell'elenco del contenuto di una cartella.
+     * La verifica di proprietà è la stessa degli elenchi: la cartella deve appartenere all'utente.
+     *
+     * @param listing il tipo di elenco (ad esempio "files" o "folders")
+     * @param folderId l'ID della cartella (null per il livello principale)
+     * @param user l'utente proprietario
+     * @return l'ETag debole dell'elenco
+     */
+    @Transactional(readOnly = true)
+    public String getListingETag(String listing, Long folderId, User user) {
+        if (folderId != null) {
+            Long version = folderRepository.findContentVersion(folderId, user.getId())
+                    .orElseThrow(() -> new RuntimeException("Cartella non trovata o non autorizzata"));
+            return folderETag(listing, folderId, version);
+        }
+        Long version = userRepository.findRootContentVersion(user.getId())
+                .orElseThrow(() -> new RuntimeException("Utente non trovato"));
+        return "W/\"" + listing + "-u" + user.getId() + "-v" + version + "\"";
+    }
+
+    /**
+     * Calcola l'ETag debole dell'elenco del contenuto di una cartella già caricata e verificata
+     * dal chiamante, senza interrogare il database.
+     *
+     * @param listing il tipo di elenco
+     * @param folder la cartella
+     * @return l'ETag debole dell'elenco
+     */
+    public String getListingETag(String listing, Folder folder) {
+        return folderETag(listing, folder.getId(), folder.getContentVersion());
+    }
+
+    private static String folderETag(String listing, Long folderId, Long version) {
+        return "W/\"" + listing + "-f" + folderId + "-v" + version + "\"";
+    }
+}
@@ -1,23 +1,48 @@
 package com.springBoot.saveMe.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.springBoot.saveMe.model.entity.SharePermission;
 import com.springBoot.saveMe.model.entity.User;
 import com.springBoot.saveMe.model.enums.PermissionType;
 import com.springBoot.saveMe.model.enums.ResourceType;
+import com.springBoot.saveMe.model.projection.PublicTokenView;
+import com.springBoot.saveMe.model.projection.PurgedShareView;
+import com.springBoot.saveMe.model.share.PublicLinkGrant;
 import com.springBoot.saveMe.repository.SharePermissionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Servizio per la gestione dei permessi di condivisione.
  * Gestisce la creazione, la lettura e la rimozione dei permessi di condivisione per file e cartelle.
+ * Le decisioni di accesso vengono conservate in una cache in memoria, limitata per numero
+ * di voci e durata, e invalidate alla creazione e alla revoca delle condivisioni.
+ * <p>
+ * I token dei link pubblici passano da tre livelli prima del database: un filtro di Bloom
+ * di tutti i token validi, che scarta i token inesistenti, una cache dei link validi
+ * (che rispetta la scadenza del link) e una cache negativa di breve durata.
+ * Gli URL di download firmati non passano dal database: la loro revoca è affidata a una lista
+ * in memoria degli id delle condivisioni revocate, conservati per la durata massima di un URL.
  */
 @Service
 @RequiredArgsConstructor
@@ -25,6 +50,124 @@ import java.util.UUID;
 public class PermissionService {
 
     private final SharePermissionRepository sharePermissionRepository;
+    private final EffectiveAccessService effectiveAccessService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.permission.decision-cache.max-size:100000}")
+    private long decisionCacheMaxSize;
+
+    @Value("${app.permission.decision-cache.ttl-ms:300000}")
+    private long decisionCacheTtlMs;
+
+    @Value("${app.public-link.cache.max-size:100000}")
+    private long publicLinkCacheMaxSize;
+
+    @Value("${app.public-link.cache.ttl-ms:600000}")
+    private long publicLinkCacheTtlMs;
+
+    @Value("${app.public-link.negative-cache.max-size:100000}")
+    private long invalidTokenCacheMaxSize;
+
+    @Value("${app.public-link.negative-cache.ttl-ms:30000}")
+    private long invalidTokenCacheTtlMs;
+
+    @Value("${app.public-link.filter.expected-tokens:1000000}")
+    private long filterExpectedTokens;
+
+    @Value("${app.public-link.filter.false-positive-rate:0.01}")
+    private double filterFalsePositiveRate;
+
+    @Value("${app.signed-url.ttl-ms:3600000}")
+    private long signedUrlTtlMs;
+
+    private static final int FILTER_REBUILD_BATCH = 5000;
+
+    private Cache<AccessKey, Boolean> decisionCache;
+    private Cache<String, PublicLinkGrant> publicLinkCache;
+    private Cache<String, Boolean> invalidTokenCache;
+    private Counter filterRejections;
+
+    /**
+     * Id delle condivisioni revocate: ogni voce scade dopo la durata massima di un URL firmato,
+     * quando tutti gli URL generati prima della revoca sono scaduti.
+     */
+    private Cache<Long, Boolean> revokedShares;
+
+    /**
+     * Filtro dei token validi: null fino alla prima costruzione, quando tutti i token proseguono.
+     */
+    private volatile TokenBloomFilter tokenFilter;
+
+    /**
+     * Token creati durante una ricostruzione del filtro, da aggiungere al nuovo filtro prima di pubblicarlo.
+     */
+    private Set<String> pendingTokens;
+    private final Object tokenFilterLock = new Object();
+
+    /**
+     * Chiave di una decisione di accesso.
+     */
+    private record AccessKey(Long userId, ResourceType resourceType, Long resourceId) {
+    }
+
+    /**
+     * Crea la cache delle decisioni e ne registra le metriche (hit, miss, evizioni, dimensione)
+     * con il nome "permissionDecisions".
+     */
+    @PostConstruct
+    void initDecisionCache() {
+        decisionCache = Caffeine.newBuilder()
+                .maximumSize(decisionCacheMaxSize)
+                .expireAfterWrite(Duration.ofMillis(decisionCacheTtlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, decisionCache, "permissionDecisions");
+    }
+
+    /**
+     * Crea le cache dei token dei link pubblici e ne registra le metriche con i nomi
+     * "publicLinks" e "invalidPublicLinks"; i token scartati dal filtro di Bloom
+     * vengono contati in "public.links.filter.rejections".
+     */
+    @PostConstruct
+    void initPublicLinkCaches() {
+        Duration maxTtl = Duration.ofMillis(publicLinkCacheTtlMs);
+        publicLinkCache = Caffeine.newBuilder()
+                .maximumSize(publicLinkCacheMaxSize)
+                .expireAfter(new Expiry<String, PublicLinkGrant>() {
+                    @Override
+                    public long expireAfterCreate(String token, PublicLinkGrant grant, long currentTime) {
+                        return timeToLive(grant, maxTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, PublicLinkGrant grant, long currentTime,
+                                                  long currentDuration) {
+                        return timeToLive(grant, maxTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, PublicLinkGrant grant, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        invalidTokenCache = Caffeine.newBuilder()
+                .maximumSize(invalidTokenCacheMaxSize)
+                .expireAfterWrite(Duration.ofMillis(invalidTokenCacheTtlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, publicLinkCache, "publicLinks");
+        CaffeineCacheMetrics.monitor(meterRegistry, invalidTokenCache, "invalidPublicLinks");
+        revokedShares = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(signedUrlTtlMs))
+                .build();
+        filterRejections = Counter.builder("public.links.filter.rejections")
+                .description("Token dei link pubblici scartati dal filtro di Bloom senza accesso al database")
+                .register(meterRegistry);
+    }
 
     /**
      * Crea un permesso di condivisione per una risorsa.
@@ -59,11 +202,23 @@ public class PermissionService {
             permission.setPublicLinkToken(generatePublicLinkToken());
         }
 
-        return sharePermissionRepository.save(permission);
+        permission = sharePermissionRepository.save(permission);
+        effectiveAccessService.shareCreated(permission);
+        invalidateDecisions(permission);
+        if (permission.getPublicLinkToken() != null) {
+            String token = permission.getPublicLinkToken();
+            addToTokenFilter(token);
+            invalidateNowAndAfterCommit(() -> invalidTokenCache.invalidate(token));
+            // Anche dopo il commit: una ricostruzione del filtro in corso potrebbe non aver letto il token
+            TransactionHooks.afterCommit(() -> addToTokenFilter(token));
+        }
+        return permission;
     }
 
     /**
-     * Verifica se un utente ha accesso a una risorsa.
+     * Verifica se un utente ha accesso a una risorsa, anche tramite la condivisione
+     * di una cartella antenata. La verifica è una sola lettura dell'indice degli accessi effettivi,
+     * eseguita solo se la decisione non è già in cache.
      *
      * @param resourceId l'ID della risorsa
      * @param resourceType il tipo di risorsa
@@ -72,18 +227,126 @@ public class PermissionService {
      */
     @Transactional(readOnly = true)
     public boolean hasUserAccess(Long resourceId, ResourceType resourceType, Long userId) {
-        return sharePermissionRepository.hasUserAccess(resourceId, resourceType, userId);
+        return decisionCache.get(new AccessKey(userId, resourceType, resourceId), key ->
+                resourceType == ResourceType.FOLDER
+                        ? effectiveAccessService.hasFolderAccess(resourceId, userId)
+                        : effectiveAccessService.hasFileAccess(resourceId, userId));
     }
 
     /**
-     * Ottiene un permesso di condivisione tramite token pubblico.
+     * Risolve il token di un link pubblico. I token assenti dal filtro di Bloom vengono
+     * rifiutati senza accedere al database; gli altri vengono letti dalle cache e solo
+     * in caso di miss dal database.
      *
      * @param token il token del link pubblico
-     * @return il permesso di condivisione se valido
+     * @return l'istantanea del link se valido e non scaduto
      */
-    @Transactional(readOnly = true)
-    public Optional<SharePermission> getValidPublicPermission(String token) {
-        return sharePermissionRepository.findValidPublicLink(token, LocalDateTime.now());
+    public Optional<PublicLinkGrant> resolvePublicLink(String token) {
+        TokenBloomFilter filter = tokenFilter;
+        if (filter != null && !filter.mightContain(token)) {
+            filterRejections.increment();
+            return Optional.empty();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        PublicLinkGrant cached = publicLinkCache.getIfPresent(token);
+        if (cached != null) {
+            if (cached.getExpiresAt() == null || cached.getExpiresAt().isAfter(now)) {
+                return Optional.of(cached);
+            }
+            publicLinkCache.invalidate(token);
+        }
+        if (invalidTokenCache.getIfPresent(token) != null) {
+            return Optional.empty();
+        }
+
+        Optional<PublicLinkGrant> grant = sharePermissionRepository.findValidPublicLink(token, now)
+                .map(PublicLinkGrant::of);
+        if (grant.isPresent()) {
+            publicLinkCache.put(token, grant.get());
+        } else {
+            invalidTokenCache.put(token, Boolean.TRUE);
+        }
+        return grant;
+    }
+
+    /**
+     * Ricostruisce il filtro di Bloom dei token validi, all'avvio e poi periodicamente:
+     * il filtro non supporta le rimozioni, quindi i token revocati o scaduti restano
+     * falsi positivi fino alla ricostruzione successiva. I token vengono letti a blocchi
+     * e il nuovo filtro sostituisce il precedente solo quando è completo.
+     */
+    @Scheduled(initialDelayString = "${app.public-link.filter.initial-delay-ms:0}",
+               fixedDelayString = "${app.public-link.filter.rebuild-interval-ms:3600000}")
+    public void rebuildTokenFilter() {
+        Set<String> pending = ConcurrentHashMap.newKeySet();
+        synchronized (tokenFilterLock) {
+            pendingTokens = pending;
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            long liveTokens = sharePermissionRepository.countLiveTokens(now);
+            TokenBloomFilter filter = new TokenBloomFilter(
+                    Math.max(filterExpectedTokens, liveTokens * 2), filterFalsePositiveRate);
+
+            long afterId = 0L;
+            List<PublicTokenView> batch;
+            do {
+                batch = sharePermissionRepository.findLiveTokens(afterId, now, PageRequest.of(0, FILTER_REBUILD_BATCH));
+                for (PublicTokenView view : batch) {
+                    filter.put(view.getPublicLinkToken());
+                    afterId = view.getId();
+                }
+            } while (batch.size() == FILTER_REBUILD_BATCH);
+
+            synchronized (tokenFilterLock) {
+                pending.forEach(filter::put);
+                tokenFilter = filter;
+            }
+            log.info("Filtro dei link pubblici ricostruito: {} token validi", liveTokens);
+        } finally {
+            synchronized (tokenFilterLock) {
+                pendingTokens = null;
+            }
+        }
+    }
+
+    /**
+     * Verifica se una condivisione è stata revocata dopo aver generato URL firmati ancora validi.
+     *
+     * @param shareId l'ID della condivisione
+     * @return true se gli URL firmati della condivisione non devono essere più serviti
+     */
+    public boolean isShareRevoked(Long shareId) {
+        return revokedShares.getIfPresent(shareId) != null;
+    }
+
+    /**
+     * Revoca gli URL firmati generati dalle condivisioni indicate, dopo il commit della transazione
+     * corrente: se l'eliminazione viene annullata le condivisioni restano valide con i loro URL.
+     *
+     * @param shareIds gli ID delle condivisioni
+     */
+    public void revokeSignedUrls(Collection<Long> shareIds) {
+        List<Long> revoked = List.copyOf(shareIds);
+        TransactionHooks.afterCommit(() -> revoked.forEach(shareId -> revokedShares.put(shareId, Boolean.TRUE)));
+    }
+
+    /**
+     * Durata massima di un URL di download firmato.
+     *
+     * @return la durata massima
+     */
+    public Duration getSignedUrlTtl() {
+        return Duration.ofMillis(signedUrlTtlMs);
+    }
+
+    /**
+     * Invalida tutti i link pubblici in cache. Da usare dopo le eliminazioni massive
+     * di condivisioni che non passano da questo servizio (ad esempio l'eliminazione di una cartella).
+     */
+    public void invalidatePublicLinks() {
+        invalidateNowAndAfterCommit(publicLinkCache::invalidateAll);
     }
 
     /**
@@ -105,7 +368,12 @@ public class PermissionService {
      */
     @Transactional
     public void deleteSharePermission(Long permissionId) {
-        sharePermissionRepository.deleteById(permissionId);
+        sharePermissionRepository.findById(permissionId).ifPresent(permission -> {
+            effectiveAccessService.shareRemoved(permission);
+            sharePermissionRepository.delete(permission);
+            invalidateDecisions(permission);
+            invalidatePublicLink(permission);
+        });
     }
 
     /**
@@ -116,9 +384,117 @@ public class PermissionService {
      */
     @Transactional
     public void deleteAllSharePermissions(Long resourceId, ResourceType resourceType) {
+        List<SharePermission> permissions =
+                sharePermissionRepository.findByResourceIdAndResourceType(resourceId, resourceType);
+        permissions.forEach(effectiveAccessService::shareRemoved);
+        permissions.forEach(this::invalidateDecisions);
+        permissions.forEach(this::invalidatePublicLink);
         sharePermissionRepository.deleteByResourceIdAndResourceType(resourceId, resourceType);
     }
 
+    /**
+     * Elimina un blocco di condivisioni scadute, aggiornando l'indice degli accessi effettivi
+     * e le cache come per una revoca.
+     *
+     * @param batchSize il numero massimo di condivisioni da eliminare
+     * @return il numero di condivisioni eliminate
+     */
+    @Transactional
+    public int purgeExpiredShares(int batchSize) {
+        List<PurgedShareView> purged = sharePermissionRepository.deleteExpiredBatch(LocalDateTime.now(), batchSize);
+        for (PurgedShareView share : purged) {
+            ResourceType resourceType = ResourceType.valueOf(share.getResourceType());
+            if (share.getSharedWithUserId() != null) {
+                if (resourceType == ResourceType.FOLDER) {
+                    effectiveAccessService.folderShareRemoved(share.getSharedWithUserId(), share.getResourceId());
+                }
+                invalidateDecisions(share.getSharedWithUserId(), resourceType, share.getResourceId());
+            }
+            invalidatePublicLink(share.getPublicLinkToken());
+        }
+        return purged.size();
+    }
+
+    /**
+     * Invalida tutte le decisioni di accesso in cache. Da usare quando cambia la gerarchia
+     * delle cartelle (ad esempio uno spostamento), che modifica gli accessi ereditati
+     * di un numero non noto di risorse.
+     */
+    public void invalidateAllDecisions() {
+        invalidateNowAndAfterCommit(decisionCache::invalidateAll);
+    }
+
+    /**
+     * Invalida le decisioni in cache interessate da una condivisione. I link pubblici non
+     * influiscono sugli accessi degli utenti; la condivisione di un file cambia una sola decisione,
+     * quella di una cartella tutte le decisioni del destinatario, perché l'accesso si estende
+     * al sottoalbero.
+     */
+    private void invalidateDecisions(SharePermission permission) {
+        if (permission.getSharedWithUser() != null) {
+            invalidateDecisions(permission.getSharedWithUser().getId(),
+                    permission.getResourceType(), permission.getResourceId());
+        }
+    }
+
+    private void invalidateDecisions(Long userId, ResourceType resourceType, Long resourceId) {
+        if (resourceType == ResourceType.FILE) {
+            AccessKey key = new AccessKey(userId, ResourceType.FILE, resourceId);
+            invalidateNowAndAfterCommit(() -> decisionCache.invalidate(key));
+        } else {
+            invalidateNowAndAfterCommit(() -> decisionCache.asMap().keySet().removeIf(key -> key.userId().equals(userId)));
+        }
+    }
+
+    private void invalidatePublicLink(SharePermission permission) {
+        invalidatePublicLink(permission.getPublicLinkToken());
+        if (permission.getPublicLinkToken() != null) {
+            Long shareId = permission.getId();
+            TransactionHooks.afterCommit(() -> revokedShares.put(shareId, Boolean.TRUE));
+        }
+    }
+
+    private void invalidatePublicLink(String token) {
+        if (token != null) {
+            invalidateNowAndAfterCommit(() -> publicLinkCache.invalidate(token));
+        }
+    }
+
+    private void addToTokenFilter(String token) {
+        synchronized (tokenFilterLock) {
+            TokenBloomFilter filter = tokenFilter;
+            if (filter != null) {
+                filter.put(token);
+            }
+            if (pendingTokens != null) {
+                pendingTokens.add(token);
+            }
+        }
+    }
+
+    /**
+     * Durata in cache di un link valido: al massimo la durata configurata, e mai oltre la scadenza del link.
+     */
+    private static Duration timeToLive(PublicLinkGrant grant, Duration maxTtl) {
+        if (grant.getExpiresAt() == null) {
+            return maxTtl;
+        }
+        Duration untilExpiry = Duration.between(LocalDateTime.now(), grant.getExpiresAt());
+        if (untilExpiry.isNegative()) {
+            return Duration.ZERO;
+        }
+        return untilExpiry.compareTo(maxTtl) < 0 ? untilExpiry : maxTtl;
+    }
+
+    /**
+     * Invalida subito, per le letture della transazione corrente, e di nuovo dopo il commit:
+     * una lettura concorrente eseguita prima del commit potrebbe aver rimesso in cache la decisione precedente.
+     */
+    private static void invalidateNowAndAfterCommit(Runnable invalidation) {
+        invalidation.run();
+        TransactionHooks.afterCommit(invalidation);
+    }
+
     /**
      * Genera un token univoco per un link pubblico.
      *
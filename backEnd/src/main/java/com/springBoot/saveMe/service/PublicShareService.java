@@ -0,0 +1,86 @@
+package com.springBoot.saveMe.service;
+
+import com.springBoot.saveMe.dto.folder.FolderContentsDto;
+import com.springBoot.saveMe.model.entity.Folder;
+import com.springBoot.saveMe.model.entity.StoredFile;
+import com.springBoot.saveMe.model.enums.ResourceType;
+import com.springBoot.saveMe.model.listing.ListingQuery;
+import com.springBoot.saveMe.model.share.PublicLinkGrant;
+import com.springBoot.saveMe.repository.FolderRepository;
+import com.springBoot.saveMe.repository.StoredFileRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Servizio per la navigazione delle risorse raggiungibili da un link pubblico.
+ * Un link a una cartella autorizza l'intero sottoalbero: ogni cartella o file richiesto
+ * viene verificato con un solo confronto con il percorso materializzato della radice del link.
+ */
+@Service
+@RequiredArgsConstructor
+public class PublicShareService {
+
+    private final FolderRepository folderRepository;
+    private final StoredFileRepository fileRepository;
+    private final FolderContentsService folderContentsService;
+
+    /**
+     * Ottiene una cartella del sottoalbero condiviso da un link pubblico.
+     *
+     * @param grant il link pubblico, di tipo cartella
+     * @param folderId l'ID della cartella (null per la radice del link)
+     * @return la cartella
+     */
+    @Transactional(readOnly = true)
+    public Folder getFolder(PublicLinkGrant grant, Long folderId) {
+        if (grant.getResourceType() != ResourceType.FOLDER) {
+            throw new RuntimeException("Il link pubblico non si riferisce a una cartella");
+        }
+        if (folderId == null || folderId.equals(grant.getResourceId())) {
+            return folderRepository.findById(grant.getResourceId())
+                    .orElseThrow(() -> new RuntimeException("Cartella non trovata"));
+        }
+        return folderRepository.findInSubtree(folderId, grant.getResourceId())
+                .orElseThrow(() -> new RuntimeException("Cartella non trovata o non autorizzata"));
+    }
+
+    /**
+     * Ottiene una pagina delle sottocartelle e dei file di una cartella condivisa da un link pubblico.
+     *
+     * @param grant il link pubblico, di tipo cartella
+     * @param folderId l'ID della cartella (null per la radice del link)
+     * @param folderQuery ordinamento, filtri e cursore delle sottocartelle
+     * @param fileQuery ordinamento, filtri e cursore dei file
+     * @return il contenuto della cartella
+     */
+    @Transactional(readOnly = true)
+    public FolderContentsDto getContents(PublicLinkGrant grant, Long folderId,
+                                         ListingQuery folderQuery, ListingQuery fileQuery) {
+        return folderContentsService.getContents(getFolder(grant, folderId), folderQuery, fileQuery);
+    }
+
+    /**
+     * Ottiene un file raggiungibile da un link pubblico: il file stesso per un link a un file,
+     * un file del sottoalbero per un link a una cartella.
+     *
+     * @param grant il link pubblico
+     * @param fileId l'ID del file (può essere null per un link a un file)
+     * @return il file
+     */
+    @Transactional(readOnly = true)
+    public StoredFile getFile(PublicLinkGrant grant, Long fileId) {
+        if (grant.getResourceType() == ResourceType.FILE) {
+            if (fileId != null && !fileId.equals(grant.getResourceId())) {
+                throw new RuntimeException("File non trovato o non autorizzato");
+            }
+            return fileRepository.findById(grant.getResourceId())
+                    .orElseThrow(() -> new RuntimeException("File non trovato"));
+        }
+        if (fileId == null) {
+            throw new RuntimeException("Specificare il file della cartella condivisa");
+        }
+        return fileRepository.findInSubtree(fileId, grant.getResourceId())
+                .orElseThrow(() -> new RuntimeException("File non trovato o non autorizzato"));
+    }
+}
@@ -0,0 +1,57 @@
+package com.springBoot.saveMe.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Servizio che elimina in background le condivisioni scadute.
+ * Le righe vengono eliminate a blocchi limitati, ognuno nella propria transazione,
+ * così nessuna eliminazione tiene a lungo i lock sulla tabella delle condivisioni.
+ * Il numero di righe eliminate e la durata di ogni blocco vengono registrati nelle metriche
+ * "shares.purge.removed" e "shares.purge.batch".
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SharePurgeService {
+
+    private final PermissionService permissionService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.share.purge.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.share.purge.max-batches:100}")
+    private int maxBatches;
+
+    /**
+     * Elimina le condivisioni scadute, a blocchi, fino a esaurirle o al numero massimo
+     * di blocchi per esecuzione.
+     */
+    @Scheduled(initialDelayString = "${app.share.purge.initial-delay-ms:60000}",
+               fixedDelayString = "${app.share.purge.interval-ms:3600000}")
+    public void purgeExpired() {
+        Counter removedCounter = meterRegistry.counter("shares.purge.removed");
+        Timer batchTimer = meterRegistry.timer("shares.purge.batch");
+
+        int removed = 0;
+        int batches = 0;
+        int deleted;
+        do {
+            deleted = batchTimer.record(() -> permissionService.purgeExpiredShares(batchSize));
+            removedCounter.increment(deleted);
+            removed += deleted;
+            batches++;
+        } while (deleted == batchSize && batches < maxBatches);
+
+        if (removed > 0) {
+            log.info("Condivisioni scadute eliminate: {} in {} blocchi", removed, batches);
+        }
+    }
+}
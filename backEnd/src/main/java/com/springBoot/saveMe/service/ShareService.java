@@ -1,21 +1,32 @@
 package com.springBoot.saveMe.service;
 
+import com.springBoot.saveMe.dto.share.IncomingShareDto;
 import com.springBoot.saveMe.dto.share.ShareRequestDto;
 import com.springBoot.saveMe.dto.share.ShareResponseDto;
 import com.springBoot.saveMe.model.entity.Folder;
 import com.springBoot.saveMe.model.entity.SharePermission;
 import com.springBoot.saveMe.model.entity.StoredFile;
 import com.springBoot.saveMe.model.entity.User;
+import com.springBoot.saveMe.model.enums.ListingSort;
 import com.springBoot.saveMe.model.enums.ResourceType;
+import com.springBoot.saveMe.model.listing.KeysetPage;
+import com.springBoot.saveMe.model.listing.ListingQuery;
 import com.springBoot.saveMe.repository.FolderRepository;
+import com.springBoot.saveMe.repository.ListingSpecifications;
+import com.springBoot.saveMe.repository.SharePermissionRepository;
 import com.springBoot.saveMe.repository.StoredFileRepository;
 import com.springBoot.saveMe.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -30,6 +41,7 @@ public class ShareService {
     private final StoredFileRepository fileRepository;
     private final FolderRepository folderRepository;
     private final UserRepository userRepository;
+    private final SharePermissionRepository sharePermissionRepository;
 
     /**
      * Crea una condivisione per un file.
@@ -127,6 +139,34 @@ public class ShareService {
         return permissionService.findSharePermissions(folderId, ResourceType.FOLDER);
     }
 
+    /**
+     * Ottiene una pagina delle risorse condivise con un utente, ordinata per data di condivisione.
+     * Nomi, proprietari e dimensioni vengono letti con una sola query; le condivisioni scadute
+     * non vengono elencate.
+     *
+     * @param user l'utente destinatario delle condivisioni
+     * @param resourceType il tipo di risorsa da elencare (null per tutti)
+     * @param query direzione, cursore e dimensione della pagina
+     * @return la pagina delle condivisioni ricevute
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<IncomingShareDto> getIncomingShares(User user, ResourceType resourceType, ListingQuery query) {
+        if (query.getSort() != ListingSort.CREATED_AT) {
+            throw new RuntimeException("Le condivisioni ricevute possono essere ordinate solo per data di condivisione");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Specification<SharePermission> filter = (root, q, cb) -> cb.and(
+                cb.equal(root.get("sharedWithUser").get("id"), user.getId()),
+                cb.or(cb.isNull(root.get("expiresAt")), cb.greaterThan(root.get("expiresAt"), now)));
+        if (resourceType != null) {
+            filter = filter.and((root, q, cb) -> cb.equal(root.get("resourceType"), resourceType));
+        }
+        filter = filter.and(ListingSpecifications.createdBetween(query.getCreatedAfter(), query.getCreatedBefore()));
+
+        return KeysetPagination.fetch(sharePermissionRepository::findIncoming, filter, query,
+                "createdAt", IncomingShareDto::getCreatedAt, IncomingShareDto::getId);
+    }
+
     /**
      * Elimina una condivisione.
      *
@@ -149,25 +189,40 @@ public class ShareService {
      * @return il DTO di risposta
      */
     public ShareResponseDto convertToDto(SharePermission permission, String baseUrl) {
-        String resourceName = "";
-        
-        // Ottiene il nome della risorsa
-        if (permission.getResourceType() == ResourceType.FILE) {
-            fileRepository.findById(permission.getResourceId())
-                    .ifPresent(file -> {
-                        // Utilizziamo una variabile locale perché non possiamo modificare
-                        // la variabile resourceName direttamente da dentro la lambda
-                        Thread.currentThread().setName(file.getOriginalFileName());
-                    });
-            resourceName = Thread.currentThread().getName();
-        } else if (permission.getResourceType() == ResourceType.FOLDER) {
-            folderRepository.findById(permission.getResourceId())
-                    .ifPresent(folder -> {
-                        Thread.currentThread().setName(folder.getName());
-                    });
-            resourceName = Thread.currentThread().getName();
-        }
-        
+        return convertToDtoList(List.of(permission), baseUrl).get(0);
+    }
+
+    /**
+     * Converte una lista di permessi di condivisione in una lista di DTO di risposta.
+     * I nomi delle risorse vengono letti con una sola query per tipo di risorsa,
+     * indipendentemente dal numero di permessi.
+     *
+     * @param permissions la lista di permessi
+     * @param baseUrl l'URL base per i link pubblici
+     * @return la lista di DTO di risposta
+     */
+    public List<ShareResponseDto> convertToDtoList(List<SharePermission> permissions, String baseUrl) {
+        Map<ResourceType, Set<Long>> idsByType = permissions.stream()
+                .collect(Collectors.groupingBy(SharePermission::getResourceType,
+                        () -> new EnumMap<>(ResourceType.class),
+                        Collectors.mapping(SharePermission::getResourceId, Collectors.toSet())));
+
+        Map<Long, String> fileNames = fileRepository
+                .findAllById(idsByType.getOrDefault(ResourceType.FILE, Set.of())).stream()
+                .collect(Collectors.toMap(StoredFile::getId, StoredFile::getOriginalFileName));
+        Map<Long, String> folderNames = folderRepository
+                .findAllById(idsByType.getOrDefault(ResourceType.FOLDER, Set.of())).stream()
+                .collect(Collectors.toMap(Folder::getId, Folder::getName));
+
+        return permissions.stream()
+                .map(permission -> {
+                    Map<Long, String> names = permission.getResourceType() == ResourceType.FILE ? fileNames : folderNames;
+                    return toDto(permission, names.getOrDefault(permission.getResourceId(), ""), baseUrl);
+                })
+                .collect(Collectors.toList());
+    }
+
+    private ShareResponseDto toDto(SharePermission permission, String resourceName, String baseUrl) {
         // Costruisce l'URL pubblico se applicabile
         String publicLinkUrl = null;
         if (permission.isPublicLink() && permission.getPublicLinkToken() != null) {
@@ -189,17 +244,4 @@ public class ShareService {
                 .createdAt(permission.getCreatedAt())
                 .build();
     }
-
-    /**
-     * Converte una lista di permessi di condivisione in una lista di DTO di risposta.
-     *
-     * @param permissions la lista di permessi
-     * @param baseUrl l'URL base per i link pubblici
-     * @return la lista di DTO di risposta
-     */
-    public List<ShareResponseDto> convertToDtoList(List<SharePermission> permissions, String baseUrl) {
-        return permissions.stream()
-                .map(permission -> convertToDto(permission, baseUrl))
-                .collect(Collectors.toList());
-    }
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+package com.springBoot.saveMe.service;
+
+import com.springBoot.saveMe.model.enums.StorageLayout;
+import com.springBoot.saveMe.repository.StoredFileRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Servizio che migra in background i blob esistenti verso il layout configurato.
+ * Sposta i file a blocchi, con una pausa tra un blocco e l'altro per limitare
+ * il carico sul disco, e aggiorna stored_files.storage_path dopo ogni spostamento.
+ * Durante la migrazione le letture restano valide perché FileStorageService
+ * cerca i file in entrambi i layout.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StorageLayoutMigrator {
+
+    private final FileStorageService fileStorageService;
+    private final StoredFileRepository fileRepository;
+
+    @Value("${app.file.layout-migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.file.layout-migration.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.file.layout-migration.batch-pause-ms:500}")
+    private long batchPauseMs;
+
+    @Value("${app.file.layout-migration.max-batches-per-run:50}")
+    private int maxBatchesPerRun;
+
+    /**
+     * Esegue un ciclo di migrazione, elaborando al massimo maxBatchesPerRun blocchi.
+     * I file che non è possibile spostare vengono saltati e ritentati al ciclo successivo.
+     */
+    @Scheduled(initialDelayString = "${app.file.layout-migration.initial-delay-ms:60000}",
+               fixedDelayString = "${app.file.layout-migration.interval-ms:300000}")
+    public void migrate() {
+        if (!enabled) {
+            return;
+        }
+
+        String after = "";
+        int moved = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            List<String> paths = findPathsToMigrate(after);
+            if (paths.isEmpty()) {
+                break;
+            }
+
+            for (String storagePath : paths) {
+                moved += migratePath(storagePath);
+            }
+            after = paths.get(paths.size() - 1);
+
+            if (paths.size() < batchSize || !pause()) {
+                break;
+            }
+        }
+
+        if (moved > 0) {
+            log.info("Migrazione layout {}: {} blob spostati", fileStorageService.getStorageLayout(), moved);
+        }
+    }
+
+    private List<String> findPathsToMigrate(String after) {
+        PageRequest page = PageRequest.of(0, batchSize);
+        return fileStorageService.getStorageLayout() == StorageLayout.SHARDED
+                ? fileRepository.findFlatStoragePaths(after, page)
+                : fileRepository.findShardedStoragePaths(after, page);
+    }
+
+    /**
+     * Sposta un blob e aggiorna il percorso di tutti i file che lo referenziano.
+     * Il file viene spostato prima dell'aggiornamento del database: nel frattempo
+     * le letture lo trovano comunque tramite la ricerca in entrambi i layout.
+     */
+    private int migratePath(String storagePath) {
+        try {
+            Optional<String> newPath = fileStorageService.relocate(storagePath);
+            if (newPath.isEmpty()) {
+                log.warn("Blob non trovato durante la migrazione: {}", storagePath);
+                return 0;
+            }
+            fileRepository.updateStoragePath(storagePath, newPath.get());
+            return 1;
+        } catch (IOException | RuntimeException e) {
+            log.error("Errore durante la migrazione del blob {}: {}", storagePath, e.getMessage());
+            return 0;
+        }
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(batchPauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
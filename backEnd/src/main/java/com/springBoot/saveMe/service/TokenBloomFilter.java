@@ -0,0 +1,70 @@
+package com.springBoot.saveMe.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro di Bloom dei token dei link pubblici.
+ * Risponde "sicuramente assente" senza falsi negativi: un token che il filtro non contiene
+ * può essere rifiutato senza interrogare il database. I falsi positivi (circa la probabilità
+ * configurata) proseguono verso le cache e il database. Gli inserimenti sono thread-safe;
+ * le rimozioni non sono possibili, quindi il filtro viene ricostruito periodicamente.
+ */
+final class TokenBloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions il numero di token previsto
+     * @param falsePositiveRate la probabilità di falso positivo desiderata
+     */
+    TokenBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = Math.max(64, (m + 63) / 64 * 64);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.bits = new AtomicLongArray((int) (bitCount / 64));
+    }
+
+    void put(String token) {
+        long hash1 = hash(token, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(token, 0xC2B2AE3D27D4EB4FL);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = bits.get(word);
+            } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    boolean mightContain(String token) {
+        long hash1 = hash(token, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(token, 0xC2B2AE3D27D4EB4FL);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hash a 64 bit (FNV-1a con seme, seguito dal mescolamento finale di SplitMix64).
+     */
+    private static long hash(String token, long seed) {
+        long h = 0xCBF29CE484222325L ^ seed;
+        for (byte b : token.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001B3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
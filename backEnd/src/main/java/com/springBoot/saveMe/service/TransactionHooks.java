@@ -0,0 +1,53 @@
+package com.springBoot.saveMe.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Utility per eseguire azioni al termine della transazione corrente.
+ * Usata per le operazioni sul file system e sulle cache che devono seguire l'esito del database.
+ */
+public final class TransactionHooks {
+
+    private TransactionHooks() {
+    }
+
+    /**
+     * Esegue un'azione dopo il commit della transazione corrente,
+     * oppure subito se non c'è una transazione attiva.
+     *
+     * @param action l'azione da eseguire
+     */
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Esegue un'azione se la transazione corrente viene annullata.
+     * Senza una transazione attiva l'azione non viene mai eseguita.
+     *
+     * @param action l'azione da eseguire
+     */
+    public static void afterRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    action.run();
+                }
+            }
+        });
+    }
+}
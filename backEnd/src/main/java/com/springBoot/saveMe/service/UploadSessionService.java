@@ -0,0 +1,267 @@
+package com.springBoot.saveMe.service;
+
+import com.springBoot.saveMe.dto.upload.ByteRangeDto;
+import com.springBoot.saveMe.dto.upload.UploadSessionRequestDto;
+import com.springBoot.saveMe.dto.upload.UploadSessionResponseDto;
+import com.springBoot.saveMe.model.entity.Folder;
+import com.springBoot.saveMe.model.entity.StoredFile;
+import com.springBoot.saveMe.model.entity.UploadSession;
+import com.springBoot.saveMe.model.entity.User;
+import com.springBoot.saveMe.model.enums.UploadSessionStatus;
+import com.springBoot.saveMe.model.storage.StagedBlob;
+import com.springBoot.saveMe.repository.FolderRepository;
+import com.springBoot.saveMe.repository.UploadSessionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.UUID;
+
+/**
+ * Servizio per la gestione degli upload a blocchi riprendibili.
+ * Un upload viene aperto come sessione, riceve blocchi numerati in qualsiasi ordine
+ * (anche in parallelo) e viene confermato assemblando i blocchi in un unico file.
+ * Le sessioni inattive vengono eliminate periodicamente insieme ai loro blocchi.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UploadSessionService {
+
+    private final UploadSessionRepository sessionRepository;
+    private final FolderRepository folderRepository;
+    private final FileStorageService fileStorageService;
+    private final FileService fileService;
+
+    @Value("${app.file.upload-session.default-chunk-size:8388608}")
+    private int defaultChunkSize;
+
+    @Value("${app.file.upload-session.max-chunk-size:67108864}")
+    private int maxChunkSize;
+
+    @Value("${app.file.upload-session.ttl-ms:86400000}")
+    private long sessionTtlMs;
+
+    /**
+     * Apre una nuova sessione di upload.
+     *
+     * @param request i dati del file da caricare
+     * @param owner l'utente proprietario
+     * @return la sessione creata
+     */
+    @Transactional
+    public UploadSession createSession(UploadSessionRequestDto request, User owner) {
+        // Verifica la cartella di destinazione se specificata
+        Folder folder = null;
+        if (request.getFolderId() != null) {
+            folder = folderRepository.findByIdAndOwner(request.getFolderId(), owner)
+                    .orElseThrow(() -> new RuntimeException("Cartella non trovata o non autorizzata"));
+        }
+
+        int chunkSize = request.getChunkSize() != null ? request.getChunkSize() : defaultChunkSize;
+        if (chunkSize > maxChunkSize) {
+            throw new RuntimeException("Dimensione dei blocchi troppo grande: massimo " + maxChunkSize + " byte");
+        }
+
+        UploadSession session = UploadSession.builder()
+                .id(UUID.randomUUID().toString())
+                .owner(owner)
+                .folder(folder)
+                .fileName(request.getFileName())
+                .contentType(request.getContentType())
+                .totalSize(request.getTotalSize())
+                .chunkSize(chunkSize)
+                .status(UploadSessionStatus.OPEN)
+                .expiresAt(nextExpiration())
+                .build();
+
+        return sessionRepository.save(session);
+    }
+
+    /**
+     * Riceve un blocco di una sessione di upload.
+     * Un blocco già ricevuto può essere inviato di nuovo: sostituisce quello precedente.
+     *
+     * @param sessionId l'ID della sessione
+     * @param index l'indice del blocco
+     * @param inputStream il contenuto del blocco
+     * @param owner l'utente proprietario
+     * @throws IOException se si verifica un errore durante la scrittura
+     */
+    public void putChunk(String sessionId, int index, InputStream inputStream, User owner) throws IOException {
+        UploadSession session = getOpenSession(sessionId, owner);
+
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new RuntimeException("Indice del blocco non valido: " + index);
+        }
+
+        fileStorageService.writeChunk(sessionId, index, inputStream, session.getChunkLength(index));
+        sessionRepository.extendExpiration(sessionId, nextExpiration());
+    }
+
+    /**
+     * Ottiene lo stato di una sessione, con gli intervalli di byte già ricevuti.
+     *
+     * @param sessionId l'ID della sessione
+     * @param owner l'utente proprietario
+     * @return lo stato della sessione
+     * @throws IOException se si verifica un errore durante la lettura dei blocchi
+     */
+    @Transactional(readOnly = true)
+    public UploadSessionResponseDto getSessionStatus(String sessionId, User owner) throws IOException {
+        UploadSession session = sessionRepository.findByIdAndOwner(sessionId, owner)
+                .orElseThrow(() -> new RuntimeException("Sessione di upload non trovata o non autorizzata"));
+        return convertToDto(session, fileStorageService.listChunks(sessionId));
+    }
+
+    /**
+     * Conferma una sessione: assembla i blocchi in un unico blob e registra il file.
+     * La sessione viene bloccata nello stato COMMITTING, così un secondo commit
+     * concorrente non può registrare lo stesso file due volte.
+     *
+     * @param sessionId l'ID della sessione
+     * @param owner l'utente proprietario
+     * @return il file registrato
+     * @throws IOException se si verifica un errore durante l'assemblaggio
+     */
+    public StoredFile commitSession(String sessionId, User owner) throws IOException {
+        UploadSession session = getOpenSession(sessionId, owner);
+
+        SortedSet<Integer> received = fileStorageService.listChunks(sessionId);
+        if (received.size() != session.getChunkCount()) {
+            throw new RuntimeException("Upload incompleto: ricevuti " + received.size()
+                    + " blocchi su " + session.getChunkCount());
+        }
+
+        if (sessionRepository.updateStatus(sessionId, UploadSessionStatus.OPEN, UploadSessionStatus.COMMITTING) == 0) {
+            throw new RuntimeException("Sessione di upload già in fase di conferma");
+        }
+        sessionRepository.extendExpiration(sessionId, nextExpiration());
+
+        StoredFile storedFile;
+        try {
+            StagedBlob staged = fileStorageService.stageChunks(sessionId, session.getChunkCount(),
+                    session.getFileName(), session.getContentType());
+            Long folderId = session.getFolder() != null ? session.getFolder().getId() : null;
+            storedFile = fileService.storeStagedFile(staged, folderId, owner);
+        } catch (IOException | RuntimeException e) {
+            // Riapre la sessione per permettere un nuovo tentativo
+            sessionRepository.updateStatus(sessionId, UploadSessionStatus.COMMITTING, UploadSessionStatus.OPEN);
+            throw e;
+        }
+
+        sessionRepository.deleteById(sessionId);
+        fileStorageService.deleteChunks(sessionId);
+        log.info("Sessione di upload {} confermata: file {}", sessionId, storedFile.getId());
+        return storedFile;
+    }
+
+    /**
+     * Annulla una sessione di upload eliminando i blocchi ricevuti.
+     *
+     * @param sessionId l'ID della sessione
+     * @param owner l'utente proprietario
+     */
+    public void abortSession(String sessionId, User owner) {
+        UploadSession session = getOpenSession(sessionId, owner);
+        sessionRepository.delete(session);
+        fileStorageService.deleteChunks(sessionId);
+    }
+
+    /**
+     * Elimina periodicamente le sessioni scadute e le directory di blocchi
+     * rimaste senza sessione (ad esempio dopo un arresto durante un commit).
+     */
+    @Scheduled(fixedDelayString = "${app.file.upload-session.sweep-interval-ms:600000}")
+    public void expireSessions() {
+        List<UploadSession> expired = sessionRepository.findByExpiresAtBefore(LocalDateTime.now());
+        for (UploadSession session : expired) {
+            sessionRepository.delete(session);
+            fileStorageService.deleteChunks(session.getId());
+        }
+
+        int orphaned = 0;
+        try {
+            for (String sessionId : fileStorageService.listChunkSessions(Instant.now().minusMillis(sessionTtlMs))) {
+                if (!sessionRepository.existsById(sessionId)) {
+                    fileStorageService.deleteChunks(sessionId);
+                    orphaned++;
+                }
+            }
+        } catch (IOException e) {
+            log.error("Errore durante la pulizia dei blocchi orfani: {}", e.getMessage());
+        }
+
+        if (!expired.isEmpty() || orphaned > 0) {
+            log.info("Sessioni di upload scadute eliminate: {}, directory orfane: {}", expired.size(), orphaned);
+        }
+    }
+
+    /**
+     * Converte una sessione in un DTO, raggruppando i blocchi ricevuti in intervalli di byte contigui.
+     *
+     * @param session la sessione
+     * @param received gli indici dei blocchi ricevuti
+     * @return il DTO della sessione
+     */
+    public UploadSessionResponseDto convertToDto(UploadSession session, SortedSet<Integer> received) {
+        List<ByteRangeDto> ranges = new ArrayList<>();
+        List<Integer> missing = new ArrayList<>();
+        long receivedBytes = 0;
+
+        ByteRangeDto current = null;
+        for (int index = 0; index < session.getChunkCount(); index++) {
+            if (!received.contains(index)) {
+                missing.add(index);
+                current = null;
+                continue;
+            }
+            long start = (long) index * session.getChunkSize();
+            long end = start + session.getChunkLength(index) - 1;
+            receivedBytes += session.getChunkLength(index);
+            if (current != null) {
+                current.setEnd(end);
+            } else {
+                current = new ByteRangeDto(start, end);
+                ranges.add(current);
+            }
+        }
+
+        return UploadSessionResponseDto.builder()
+                .id(session.getId())
+                .fileName(session.getFileName())
+                .folderId(session.getFolder() != null ? session.getFolder().getId() : null)
+                .totalSize(session.getTotalSize())
+                .chunkSize(session.getChunkSize())
+                .chunkCount(session.getChunkCount())
+                .missingChunks(missing)
+                .receivedRanges(ranges)
+                .receivedBytes(receivedBytes)
+                .expiresAt(session.getExpiresAt())
+                .build();
+    }
+
+    private UploadSession getOpenSession(String sessionId, User owner) {
+        UploadSession session = sessionRepository.findByIdAndOwner(sessionId, owner)
+                .orElseThrow(() -> new RuntimeException("Sessione di upload non trovata o non autorizzata"));
+        if (session.getStatus() != UploadSessionStatus.OPEN) {
+            throw new RuntimeException("Sessione di upload già in fase di conferma");
+        }
+        return session;
+    }
+
+    private LocalDateTime nextExpiration() {
+        return LocalDateTime.now().plus(Duration.ofMillis(sessionTtlMs));
+    }
+}
@@ -0,0 +1,10 @@
+-- Indici compositi per la paginazione per chiave degli elenchi:
+-- proprietario e cartella, poi il criterio di ordinamento e l'id come spareggio
+
+CREATE INDEX idx_stored_files_listing_name ON stored_files (owner_id, folder_id, original_file_name, id);
+CREATE INDEX idx_stored_files_listing_size ON stored_files (owner_id, folder_id, size, id);
+CREATE INDEX idx_stored_files_listing_created_at ON stored_files (owner_id, folder_id, created_at, id);
+
+CREATE INDEX idx_folders_listing_name ON folders (owner_id, parent_folder_id, name, id);
+CREATE INDEX idx_folders_listing_size ON folders (owner_id, parent_folder_id, total_size, id);
+CREATE INDEX idx_folders_listing_created_at ON folders (owner_id, parent_folder_id, created_at, id);
@@ -0,0 +1,25 @@
+-- Indice degli accessi effettivi alle cartelle condivise: per ogni utente, le cartelle
+-- raggiungibili tramite la condivisione di una cartella antenata (o della cartella stessa).
+-- grants conta le condivisioni che coprono la cartella, così revocarne una non
+-- toglie l'accesso concesso da un'altra. Le righe vengono aggiornate in modo incrementale
+-- alla creazione e alla revoca delle condivisioni e agli spostamenti delle cartelle
+
+CREATE TABLE effective_folder_access (
+    user_id BIGINT NOT NULL,
+    folder_id BIGINT NOT NULL,
+    grants INTEGER NOT NULL,
+    PRIMARY KEY (user_id, folder_id),
+    FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE,
+    FOREIGN KEY (folder_id) REFERENCES folders (id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_effective_folder_access_folder ON effective_folder_access (folder_id);
+
+-- Calcolo iniziale dalle condivisioni di cartelle esistenti, sull'intervallo di percorsi del sottoalbero
+INSERT INTO effective_folder_access (user_id, folder_id, grants)
+SELECT sp.shared_with_user_id, f.id, COUNT(*)
+FROM share_permissions sp
+JOIN folders r ON r.id = sp.resource_id
+JOIN folders f ON f.path >= r.path AND f.path < LEFT(r.path, -1) || '0'
+WHERE sp.resource_type = 'FOLDER' AND sp.shared_with_user_id IS NOT NULL
+GROUP BY sp.shared_with_user_id, f.id;
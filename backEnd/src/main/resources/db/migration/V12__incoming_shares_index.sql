@@ -0,0 +1,4 @@
+-- Indice per l'elenco delle condivisioni ricevute: destinatario, data di condivisione
+-- e id come spareggio per la paginazione per chiave
+
+CREATE INDEX idx_share_permissions_incoming ON share_permissions (shared_with_user_id, created_at, id);
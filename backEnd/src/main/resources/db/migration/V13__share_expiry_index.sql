@@ -0,0 +1,7 @@
+-- Indice parziale sulla scadenza delle condivisioni: contiene solo le righe con una scadenza,
+-- le uniche che il job di pulizia può eliminare. Le condivisioni senza scadenza restano fuori dall'indice
+
+CREATE INDEX idx_share_permissions_expires_at ON share_permissions (expires_at) WHERE expires_at IS NOT NULL;
+
+-- Il vincolo UNIQUE su public_link_token crea già un indice sulla colonna: quello esplicito è un duplicato
+DROP INDEX IF EXISTS idx_share_permissions_token;
@@ -0,0 +1,6 @@
+-- Indice per la lettura a blocchi dei file di una cartella in ordine di nome (archivi ZIP):
+-- ogni blocco è una scansione di intervallo, senza ordinare tutti i file della cartella.
+-- Sostituisce l'indice sulla sola cartella, di cui è un'estensione
+
+CREATE INDEX idx_stored_files_folder_name ON stored_files (folder_id, original_file_name, id);
+DROP INDEX IF EXISTS idx_stored_files_folder_id;
@@ -0,0 +1,4 @@
+-- Indice per la lettura a blocchi dell'albero delle cartelle di un utente in ordine di percorso:
+-- ogni blocco è una scansione di intervallo, senza ordinare tutte le cartelle dell'utente
+
+CREATE INDEX idx_folders_owner_path ON folders (owner_id, path);
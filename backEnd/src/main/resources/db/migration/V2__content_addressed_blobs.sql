@@ -0,0 +1,14 @@
+-- Storage content-addressed: i blob sono identificati dal digest SHA-256 del contenuto
+
+-- Tabella dei blob deduplicati con conteggio dei riferimenti
+CREATE TABLE blobs (
+    digest VARCHAR(64) PRIMARY KEY,
+    size BIGINT NOT NULL,
+    ref_count INTEGER NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
+
+-- Digest del contenuto di ogni file (NULL per i file caricati prima della deduplicazione)
+ALTER TABLE stored_files ADD COLUMN content_digest VARCHAR(64);
+
+CREATE INDEX idx_stored_files_content_digest ON stored_files (content_digest);
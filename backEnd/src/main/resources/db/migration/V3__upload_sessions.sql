@@ -0,0 +1,19 @@
+-- Sessioni di upload a blocchi, riprendibili
+
+CREATE TABLE upload_sessions (
+    id VARCHAR(36) PRIMARY KEY,
+    owner_id BIGINT NOT NULL,
+    folder_id BIGINT,
+    file_name VARCHAR(255) NOT NULL,
+    content_type VARCHAR(100),
+    total_size BIGINT NOT NULL,
+    chunk_size INTEGER NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    FOREIGN KEY (owner_id) REFERENCES users (id) ON DELETE CASCADE,
+    FOREIGN KEY (folder_id) REFERENCES folders (id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_upload_sessions_owner_id ON upload_sessions (owner_id);
+CREATE INDEX idx_upload_sessions_expires_at ON upload_sessions (expires_at);
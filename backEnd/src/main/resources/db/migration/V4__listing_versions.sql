@@ -0,0 +1,6 @@
+-- Contatori di versione degli elenchi, usati come ETag deboli:
+-- vengono incrementati a ogni modifica del contenuto diretto di una cartella
+-- (o del livello principale dell'utente)
+
+ALTER TABLE folders ADD COLUMN content_version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE users ADD COLUMN root_content_version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,12 @@
+-- Compressione dei contenuti su disco: si registrano la codifica e la dimensione
+-- fisica, mentre size resta la dimensione logica del contenuto originale
+
+ALTER TABLE blobs ADD COLUMN content_encoding VARCHAR(20) NOT NULL DEFAULT 'IDENTITY';
+ALTER TABLE blobs ADD COLUMN physical_size BIGINT;
+UPDATE blobs SET physical_size = size;
+ALTER TABLE blobs ALTER COLUMN physical_size SET NOT NULL;
+
+ALTER TABLE stored_files ADD COLUMN content_encoding VARCHAR(20) NOT NULL DEFAULT 'IDENTITY';
+ALTER TABLE stored_files ADD COLUMN physical_size BIGINT;
+UPDATE stored_files SET physical_size = size;
+ALTER TABLE stored_files ALTER COLUMN physical_size SET NOT NULL;
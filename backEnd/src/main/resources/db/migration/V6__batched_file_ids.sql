@@ -0,0 +1,3 @@
+-- Gli ID dei file vengono riservati a blocchi di 50 (ottimizzatore pooled di Hibernate):
+-- l'ID è noto prima dell'insert e gli insert possono essere raggruppati in batch JDBC
+ALTER SEQUENCE stored_files_id_seq INCREMENT BY 50;
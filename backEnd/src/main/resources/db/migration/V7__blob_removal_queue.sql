@@ -0,0 +1,10 @@
+-- Coda persistente dei contenuti da rimuovere dal disco dopo le eliminazioni massive.
+-- Le righe vengono inserite nella stessa transazione che elimina i file
+-- e smaltite in background: un riavvio non lascia blob orfani sul disco
+
+CREATE TABLE blob_removals (
+    id BIGSERIAL PRIMARY KEY,
+    storage_path VARCHAR(255) NOT NULL,
+    content_digest VARCHAR(64),
+    created_at TIMESTAMP NOT NULL
+);
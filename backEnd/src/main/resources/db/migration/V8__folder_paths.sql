@@ -0,0 +1,15 @@
+-- Percorso materializzato delle cartelle: gli ID degli antenati e della cartella stessa,
+-- separati e chiusi da '/' (ad esempio '/1/5/9/').
+-- La collation "C" ordina per byte: il sottoalbero di una cartella è l'intervallo
+-- [percorso, percorso senza l'ultima '/' seguito da '0'), leggibile con l'indice
+
+ALTER TABLE folders ADD COLUMN path VARCHAR(2048) COLLATE "C" NOT NULL DEFAULT '';
+
+WITH RECURSIVE tree (id, path) AS (
+    SELECT id, '/' || id || '/' FROM folders WHERE parent_folder_id IS NULL
+    UNION ALL
+    SELECT c.id, t.path || c.id || '/' FROM folders c JOIN tree t ON c.parent_folder_id = t.id
+)
+UPDATE folders f SET path = tree.path FROM tree WHERE f.id = tree.id;
+
+CREATE INDEX idx_folders_path ON folders (path);
@@ -0,0 +1,32 @@
+-- Contatori aggregati delle cartelle: contenuto diretto e dell'intero sottoalbero.
+-- Vengono aggiornati in modo incrementale dalle operazioni su file e cartelle
+
+ALTER TABLE folders
+    ADD COLUMN direct_size BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN direct_file_count BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN direct_folder_count BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN total_size BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN total_file_count BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN total_folder_count BIGINT NOT NULL DEFAULT 0;
+
+-- Calcolo iniziale: i valori diretti di ogni cartella vengono sommati su tutti gli antenati del suo percorso
+WITH direct AS (
+    SELECT f.id, f.path,
+           COALESCE(s.size, 0) AS size,
+           COALESCE(s.files, 0) AS files,
+           (SELECT COUNT(*) FROM folders c WHERE c.parent_folder_id = f.id) AS folders
+    FROM folders f
+    LEFT JOIN (SELECT folder_id, SUM(size) AS size, COUNT(*) AS files
+               FROM stored_files WHERE folder_id IS NOT NULL GROUP BY folder_id) s ON s.folder_id = f.id
+),
+totals AS (
+    SELECT CAST(a.ancestor AS BIGINT) AS id, SUM(d.size) AS size, SUM(d.files) AS files, COUNT(*) - 1 AS folders
+    FROM direct d
+    CROSS JOIN LATERAL unnest(string_to_array(TRIM(BOTH '/' FROM d.path), '/')) AS a (ancestor)
+    GROUP BY a.ancestor
+)
+UPDATE folders f
+SET direct_size = d.size, direct_file_count = d.files, direct_folder_count = d.folders,
+    total_size = t.size, total_file_count = t.files, total_folder_count = t.folders
+FROM direct d JOIN totals t ON t.id = d.id
+WHERE f.id = d.id;
@@ -0,0 +1,130 @@
+package com.springBoot.saveMe.benchmark;
+
+import com.springBoot.saveMe.controller.FileDownloadSupport;
+import com.springBoot.saveMe.model.entity.StoredFile;
+import com.springBoot.saveMe.model.enums.StorageLayout;
+import com.springBoot.saveMe.service.FileStorageService;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark dei byte trasferiti dai download con e senza supporto alle richieste Range.
+ * Simula un download ripreso dopo interruzioni e una riproduzione video con molti salti,
+ * confrontando i byte serviti da {@link FileDownloadSupport} con quelli di un download completo.
+ * <p>
+ * Esecuzione: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.springBoot.saveMe.benchmark.RangeDownloadBenchmark}
+ */
+public class RangeDownloadBenchmark {
+
+    private static final long FILE_SIZE = 256L * 1024 * 1024;
+    private static final int INTERRUPTIONS = 4;
+    private static final int SEEKS = 40;
+    private static final long SEEK_WINDOW = 2L * 1024 * 1024;
+
+    private final FileDownloadSupport downloadSupport;
+    private final Random random = new Random(42);
+
+    private RangeDownloadBenchmark(FileDownloadSupport downloadSupport) {
+        this.downloadSupport = downloadSupport;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path uploadDir = Files.createTempDirectory("range-benchmark");
+        Path file = uploadDir.resolve("video.bin");
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(FILE_SIZE);
+        }
+        try {
+            FileStorageService storageService = new FileStorageService(null, null, null);
+            ReflectionTestUtils.setField(storageService, "uploadDir", uploadDir.toString());
+            ReflectionTestUtils.setField(storageService, "storageLayout", StorageLayout.FLAT);
+            RangeDownloadBenchmark benchmark = new RangeDownloadBenchmark(new FileDownloadSupport(storageService));
+            StoredFile storedFile = StoredFile.builder()
+                    .originalFileName("video.mp4")
+                    .contentType("video/mp4")
+                    .size(FILE_SIZE)
+                    .storagePath(file.getFileName().toString())
+                    .createdAt(LocalDateTime.now())
+                    .build();
+
+            benchmark.resumedDownload(storedFile);
+            benchmark.seekHeavyPlayback(storedFile);
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(uploadDir);
+        }
+    }
+
+    /**
+     * Download interrotto più volte: senza Range ogni ripresa riparte da zero,
+     * con Range riprende dall'ultimo byte ricevuto.
+     */
+    private void resumedDownload(StoredFile storedFile) throws IOException {
+        long withoutRange = 0;
+        long withRange = 0;
+        long received = 0;
+        for (int i = 0; i < INTERRUPTIONS; i++) {
+            long interruptedAt = received + (long) (random.nextDouble() * (FILE_SIZE - received));
+            withoutRange += interruptedAt;
+            withRange += interruptedAt - received;
+            received = interruptedAt;
+        }
+        withoutRange += FILE_SIZE;
+        withRange += servedBytes(storedFile, "bytes=" + received + "-");
+
+        report("Download ripreso (" + INTERRUPTIONS + " interruzioni)", withoutRange, withRange);
+    }
+
+    /**
+     * Riproduzione con salti: senza Range ogni salto richiede di scaricare il file
+     * dall'inizio fino alla posizione richiesta, con Range solo la finestra letta.
+     * Un salto su due viene servito come richiesta multi-range (posizione corrente e indice finale).
+     */
+    private void seekHeavyPlayback(StoredFile storedFile) throws IOException {
+        long withoutRange = 0;
+        long withRange = 0;
+        for (int i = 0; i < SEEKS; i++) {
+            long start = (long) (random.nextDouble() * (FILE_SIZE - SEEK_WINDOW));
+            long end = start + SEEK_WINDOW - 1;
+            withoutRange += end + 1;
+            String range = (i % 2 == 0)
+                    ? "bytes=" + start + "-" + end
+                    : "bytes=" + start + "-" + end + ",-65536";
+            withRange += servedBytes(storedFile, range);
+        }
+
+        report("Riproduzione con " + SEEKS + " salti", withoutRange, withRange);
+    }
+
+    private long servedBytes(StoredFile storedFile, String range) throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, range);
+        ResponseEntity<?> response = downloadSupport.buildDownloadResponse(storedFile, request);
+        Object body = response.getBody();
+        if (body instanceof ResourceRegion region) {
+            return region.getCount();
+        }
+        if (body instanceof List<?> regions) {
+            return regions.stream().mapToLong(region -> ((ResourceRegion) region).getCount()).sum();
+        }
+        return response.getHeaders().getContentLength();
+    }
+
+    private static void report(String scenario, long withoutRange, long withRange) {
+        double saved = 100.0 * (withoutRange - withRange) / withoutRange;
+        System.out.printf("%-40s senza Range: %,15d B  con Range: %,15d B  risparmio: %5.1f%%%n",
+                scenario, withoutRange, withRange, saved);
+    }
+}
@@ -0,0 +1,152 @@
+package com.springBoot.saveMe.benchmark;
+
+import com.springBoot.saveMe.service.FileStorageService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Benchmark di throughput e CPU del download: copia tramite stream sull'heap (il percorso di
+ * {@code ResourceHttpMessageConverter}) contro {@link FileStorageService#transferTo} verso un socket.
+ * Per ogni dimensione (1 MB, 100 MB, 2 GB) il file viene inviato su una connessione loopback
+ * e si misurano tempo, CPU e byte allocati dal thread che invia.
+ * <p>
+ * Esecuzione: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.springBoot.saveMe.benchmark.ZeroCopyDownloadBenchmark}
+ */
+public class ZeroCopyDownloadBenchmark {
+
+    private static final long[] SIZES = {1L << 20, 100L << 20, 2L << 30};
+    private static final long BYTES_PER_SIZE = 4L << 30;
+    private static final int WRITE_BUFFER = 1 << 20;
+
+    private final FileStorageService fileStorageService = new FileStorageService(null, null, null);
+    private final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final ExecutorService receiver = Executors.newSingleThreadExecutor();
+
+    private interface Sender {
+        void send(Path file, long size, SocketChannel socket) throws IOException;
+    }
+
+    private record Measurement(long nanos, long cpuNanos, long allocatedBytes) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        ZeroCopyDownloadBenchmark benchmark = new ZeroCopyDownloadBenchmark();
+        try {
+            for (long size : SIZES) {
+                benchmark.run(size);
+            }
+        } finally {
+            benchmark.receiver.shutdownNow();
+        }
+    }
+
+    private void run(long size) throws Exception {
+        Path file = Files.createTempFile("zero-copy-benchmark", ".bin");
+        try {
+            fill(file, size);
+            int iterations = (int) Math.max(1, Math.min(50, BYTES_PER_SIZE / size));
+
+            Sender stream = (path, length, socket) -> {
+                OutputStream outputStream = Channels.newOutputStream(socket);
+                try (InputStream inputStream = new FileSystemResource(path).getInputStream()) {
+                    StreamUtils.copy(inputStream, outputStream);
+                }
+            };
+            Sender zeroCopy = (path, length, socket) -> fileStorageService.transferTo(path, 0, length, socket);
+
+            // Riscaldamento del JIT e della page cache
+            measure(file, size, stream, 1);
+            measure(file, size, zeroCopy, 1);
+
+            report(size, "stream (heap)", measure(file, size, stream, iterations), iterations);
+            report(size, "transferTo (zero-copy)", measure(file, size, zeroCopy, iterations), iterations);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private Measurement measure(Path file, long size, Sender sender, int iterations) throws Exception {
+        long nanos = 0;
+        long cpuNanos = 0;
+        long allocatedBytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            try (ServerSocketChannel server = ServerSocketChannel.open()) {
+                server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+                try (SocketChannel client = SocketChannel.open(server.getLocalAddress());
+                     SocketChannel accepted = server.accept()) {
+                    Future<Long> drained = receiver.submit(() -> drain(client));
+
+                    long threadId = Thread.currentThread().threadId();
+                    long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+                    long cpuBefore = threadBean.getCurrentThreadCpuTime();
+                    long start = System.nanoTime();
+                    sender.send(file, size, accepted);
+                    accepted.shutdownOutput();
+                    long received = drained.get();
+                    nanos += System.nanoTime() - start;
+                    cpuNanos += threadBean.getCurrentThreadCpuTime() - cpuBefore;
+                    allocatedBytes += threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+                    if (received != size) {
+                        throw new IllegalStateException("Ricevuti " + received + " byte invece di " + size);
+                    }
+                }
+            }
+        }
+        return new Measurement(nanos, cpuNanos, allocatedBytes);
+    }
+
+    private static long drain(SocketChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER);
+        long total = 0;
+        int read;
+        while ((read = channel.read(buffer)) >= 0) {
+            total += read;
+            buffer.clear();
+        }
+        return total;
+    }
+
+    private static void fill(Path file, long size) throws IOException {
+        ByteBuffer block = ByteBuffer.allocateDirect(WRITE_BUFFER);
+        for (int i = 0; i < WRITE_BUFFER; i++) {
+            block.put((byte) (i * 31));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            long written = 0;
+            while (written < size) {
+                block.clear().limit((int) Math.min(WRITE_BUFFER, size - written));
+                written += channel.write(block);
+            }
+        }
+    }
+
+    private static void report(long size, String mode, Measurement measurement, int iterations) {
+        double seconds = measurement.nanos() / 1e9;
+        double megabytes = (double) size * iterations / (1 << 20);
+        System.out.printf("%,6d MB  %-24s %,10.1f MB/s  CPU %,8.1f ms/GB  allocati %,12d B/download%n",
+                size >> 20, mode, megabytes / seconds,
+                measurement.cpuNanos() / 1e6 / (megabytes / 1024),
+                measurement.allocatedBytes() / iterations);
+    }
+}
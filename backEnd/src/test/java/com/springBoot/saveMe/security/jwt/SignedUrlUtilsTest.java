@@ -0,0 +1,165 @@
+package com.springBoot.saveMe.security.jwt;
+
+import com.springBoot.saveMe.model.entity.StoredFile;
+import com.springBoot.saveMe.model.enums.ContentEncoding;
+import com.springBoot.saveMe.model.share.SignedDownload;
+import com.springBoot.saveMe.service.PermissionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica gli URL di download firmati: il contenuto del token sopravvive alla firma e alla verifica,
+ * i token scaduti, alterati o firmati con un'altra chiave vengono rifiutati e le condivisioni
+ * revocate restano nella lista in memoria consultata prima di servire il file, solo dopo il commit.
+ */
+class SignedUrlUtilsTest {
+
+    private static final String SECRET = "chiave-di-test-degli-url-firmati-lunga-almeno-sessantaquattro-byte-per-hs512";
+    private static final String OTHER_SECRET = "altra-chiave-di-test-degli-url-firmati-lunga-almeno-sessantaquattro-byte-hs512";
+
+    private SignedUrlUtils signedUrlUtils;
+    private StoredFile file;
+
+    @BeforeEach
+    void setUp() {
+        signedUrlUtils = signedUrlUtils(SECRET);
+        file = StoredFile.builder()
+                .id(42L)
+                .originalFileName("relazione.pdf")
+                .contentType("application/pdf")
+                .size(1234L)
+                .contentEncoding(ContentEncoding.IDENTITY)
+                .storagePath("blobs/ab/abcdef")
+                .contentDigest("abcdef")
+                .createdAt(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS))
+                .build();
+    }
+
+    @Test
+    void signedTokenIsVerified() {
+        String token = signedUrlUtils.sign(7L, file, LocalDateTime.now().plusHours(1));
+
+        SignedDownload download = signedUrlUtils.verify(token).orElseThrow();
+        assertEquals(7L, download.getShareId());
+        assertEquals(file.getId(), download.getFileId());
+        assertEquals(file.getStoragePath(), download.getStoragePath());
+        assertEquals(file.getContentType(), download.getContentType());
+        assertEquals(file.getOriginalFileName(), download.getOriginalFileName());
+        assertEquals(file.getSize(), download.getSize());
+        assertEquals(file.getContentEncoding(), download.getContentEncoding());
+        assertEquals(file.getContentDigest(), download.getContentDigest());
+        assertEquals(file.getCreatedAt(), download.getCreatedAt());
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        String token = signedUrlUtils.sign(7L, file, LocalDateTime.now().minusMinutes(1));
+
+        assertTrue(signedUrlUtils.verify(token).isEmpty());
+    }
+
+    @Test
+    void tamperedSignatureIsRejected() {
+        String token = signedUrlUtils.sign(7L, file, LocalDateTime.now().plusHours(1));
+        int index = token.lastIndexOf('.') + 10;
+        char replacement = token.charAt(index) == 'A' ? 'B' : 'A';
+        String tampered = token.substring(0, index) + replacement + token.substring(index + 1);
+
+        assertTrue(signedUrlUtils.verify(tampered).isEmpty());
+    }
+
+    @Test
+    void tamperedPayloadIsRejected() {
+        String token = signedUrlUtils.sign(7L, file, LocalDateTime.now().plusHours(1));
+        String[] parts = token.split("\\.");
+        String otherPayload = signedUrlUtils.sign(8L, file, LocalDateTime.now().plusHours(1)).split("\\.")[1];
+
+        assertTrue(signedUrlUtils.verify(parts[0] + "." + otherPayload + "." + parts[2]).isEmpty());
+    }
+
+    @Test
+    void tokenSignedWithAnotherKeyIsRejected() {
+        String token = signedUrlUtils(OTHER_SECRET).sign(7L, file, LocalDateTime.now().plusHours(1));
+
+        assertTrue(signedUrlUtils.verify(token).isEmpty());
+    }
+
+    @Test
+    void revokedShareIsDenied() {
+        PermissionService permissionService = permissionService();
+        String token = signedUrlUtils.sign(7L, file, LocalDateTime.now().plusHours(1));
+        Optional<SignedDownload> download = signedUrlUtils.verify(token);
+        assertTrue(download.isPresent());
+        assertFalse(permissionService.isShareRevoked(download.get().getShareId()));
+
+        permissionService.revokeSignedUrls(List.of(7L));
+
+        // La firma resta valida: è la lista delle revoche a rifiutare il download
+        assertTrue(signedUrlUtils.verify(token).isPresent());
+        assertTrue(permissionService.isShareRevoked(download.get().getShareId()));
+        assertFalse(permissionService.isShareRevoked(8L));
+    }
+
+    @Test
+    void revocationWaitsForCommit() {
+        PermissionService permissionService = permissionService();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            permissionService.revokeSignedUrls(List.of(7L));
+            assertFalse(permissionService.isShareRevoked(7L));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertTrue(permissionService.isShareRevoked(7L));
+    }
+
+    @Test
+    void rolledBackRevocationKeepsShare() {
+        PermissionService permissionService = permissionService();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            permissionService.revokeSignedUrls(List.of(7L));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertFalse(permissionService.isShareRevoked(7L));
+    }
+
+    private static SignedUrlUtils signedUrlUtils(String secret) {
+        SignedUrlUtils utils = new SignedUrlUtils();
+        ReflectionTestUtils.setField(utils, "signedUrlSecret", secret);
+        return utils;
+    }
+
+    private static PermissionService permissionService() {
+        PermissionService service = new PermissionService(null, null, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "decisionCacheMaxSize", 1000L);
+        ReflectionTestUtils.setField(service, "decisionCacheTtlMs", 60000L);
+        ReflectionTestUtils.setField(service, "publicLinkCacheMaxSize", 1000L);
+        ReflectionTestUtils.setField(service, "publicLinkCacheTtlMs", 60000L);
+        ReflectionTestUtils.setField(service, "invalidTokenCacheMaxSize", 1000L);
+        ReflectionTestUtils.setField(service, "invalidTokenCacheTtlMs", 60000L);
+        ReflectionTestUtils.setField(service, "signedUrlTtlMs", 3600000L);
+        ReflectionTestUtils.invokeMethod(service, "initDecisionCache");
+        ReflectionTestUtils.invokeMethod(service, "initPublicLinkCaches");
+        return service;
+    }
+}
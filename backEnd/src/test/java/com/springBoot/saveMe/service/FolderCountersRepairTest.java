@@ -0,0 +1,102 @@
+package com.springBoot.saveMe.service;
+
+import com.springBoot.saveMe.model.entity.Folder;
+import com.springBoot.saveMe.model.entity.StoredFile;
+import com.springBoot.saveMe.model.entity.User;
+import com.springBoot.saveMe.model.enums.ContentEncoding;
+import com.springBoot.saveMe.repository.FolderRepository;
+import com.springBoot.saveMe.repository.StoredFileRepository;
+import com.springBoot.saveMe.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashSet;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica il ricalcolo dei contatori aggregati delle cartelle: i file salvati senza passare
+ * dal servizio lasciano i contatori divergenti, il ricalcolo li corregge sulla cartella
+ * e su tutti i suoi antenati e un secondo ricalcolo non trova più nulla da correggere.
+ */
+@SpringBootTest
+@Transactional
+class FolderCountersRepairTest {
+
+    @Autowired
+    private FolderService folderService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FolderRepository folderRepository;
+
+    @Autowired
+    private StoredFileRepository fileRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void repairFixesDivergentCounters() {
+        User owner = createUser();
+        Folder root = folderService.createFolder("root", null, owner);
+        Folder child = folderService.createFolder("child", root.getId(), owner);
+        createFile(owner, child, 10L);
+        createFile(owner, child, 32L);
+        entityManager.flush();
+        entityManager.clear();
+        Long childVersion = folderRepository.findById(child.getId()).orElseThrow().getContentVersion();
+        entityManager.clear();
+
+        folderRepository.lockOwnerFolders(owner.getId());
+        assertEquals(2, folderRepository.repairCounters(owner.getId()));
+        entityManager.clear();
+
+        Folder repairedChild = folderRepository.findById(child.getId()).orElseThrow();
+        assertEquals(42L, repairedChild.getDirectSize());
+        assertEquals(2L, repairedChild.getDirectFileCount());
+        assertEquals(42L, repairedChild.getTotalSize());
+        assertEquals(2L, repairedChild.getTotalFileCount());
+        assertTrue(repairedChild.getContentVersion() > childVersion);
+
+        Folder repairedRoot = folderRepository.findById(root.getId()).orElseThrow();
+        assertEquals(0L, repairedRoot.getDirectSize());
+        assertEquals(1L, repairedRoot.getDirectFolderCount());
+        assertEquals(42L, repairedRoot.getTotalSize());
+        assertEquals(2L, repairedRoot.getTotalFileCount());
+        assertEquals(1L, repairedRoot.getTotalFolderCount());
+
+        assertEquals(0, folderRepository.repairCounters(owner.getId()));
+    }
+
+    private User createUser() {
+        String name = "counters-" + UUID.randomUUID();
+        return userRepository.save(User.builder()
+                .username(name)
+                .password("password")
+                .email(name + "@example.com")
+                .roles(new HashSet<>())
+                .build());
+    }
+
+    private void createFile(User owner, Folder folder, long size) {
+        fileRepository.save(StoredFile.builder()
+                .fileName("file-" + UUID.randomUUID())
+                .originalFileName("file.txt")
+                .contentType("text/plain")
+                .size(size)
+                .physicalSize(size)
+                .contentEncoding(ContentEncoding.IDENTITY)
+                .storagePath("test/" + UUID.randomUUID())
+                .owner(owner)
+                .folder(folder)
+                .build());
+    }
+}
@@ -0,0 +1,157 @@
+package com.springBoot.saveMe.service;
+
+import com.springBoot.saveMe.model.entity.Folder;
+import com.springBoot.saveMe.model.entity.StoredFile;
+import com.springBoot.saveMe.model.entity.User;
+import com.springBoot.saveMe.model.enums.ContentEncoding;
+import com.springBoot.saveMe.model.listing.ListingQuery;
+import com.springBoot.saveMe.repository.FolderRepository;
+import com.springBoot.saveMe.repository.StoredFileRepository;
+import com.springBoot.saveMe.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashSet;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifica che gli elenchi di file e cartelle eseguano un numero di query costante,
+ * indipendente dal numero di elementi: proprietario e cartella genitore non devono
+ * essere caricati in modo lazy uno per riga.
+ */
+@SpringBootTest
+@Transactional
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ListingStatementCountTest {
+
+    private static final int SMALL = 3;
+    private static final int LARGE = 60;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private FolderService folderService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FolderRepository folderRepository;
+
+    @Autowired
+    private StoredFileRepository fileRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void enableStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    void fileListingIssuesConstantStatements() {
+        User owner = createUser();
+        Folder small = createFolder(owner, null, "small");
+        Folder large = createFolder(owner, null, "large");
+        createFiles(owner, small, SMALL);
+        createFiles(owner, large, LARGE);
+        detachAll();
+
+        long smallCount = countStatements(() -> assertEquals(SMALL,
+                fileService.getFolderFiles(owner, small, ListingQuery.builder().build()).getItems().size()));
+        long largeCount = countStatements(() -> assertEquals(LARGE,
+                fileService.getFolderFiles(owner, large, ListingQuery.builder().build()).getItems().size()));
+
+        assertEquals(1, smallCount);
+        assertEquals(smallCount, largeCount);
+    }
+
+    @Test
+    void folderListingIssuesConstantStatements() {
+        User owner = createUser();
+        Folder small = createFolder(owner, null, "small");
+        Folder large = createFolder(owner, null, "large");
+        for (int i = 0; i < SMALL; i++) {
+            createFolder(owner, small, "sub-" + i);
+        }
+        for (int i = 0; i < LARGE; i++) {
+            createFolder(owner, large, "sub-" + i);
+        }
+        detachAll();
+
+        long smallCount = countStatements(() -> assertEquals(SMALL,
+                folderService.getSubfolders(owner, small, ListingQuery.builder().build()).getItems().size()));
+        long largeCount = countStatements(() -> assertEquals(LARGE,
+                folderService.getSubfolders(owner, large, ListingQuery.builder().build()).getItems().size()));
+
+        assertEquals(1, smallCount);
+        assertEquals(smallCount, largeCount);
+    }
+
+    private long countStatements(Runnable listing) {
+        statistics.clear();
+        listing.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    /**
+     * Svuota il contesto di persistenza, così ogni associazione letta durante l'elenco
+     * richiederebbe una query.
+     */
+    private void detachAll() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private User createUser() {
+        String name = "listing-" + UUID.randomUUID();
+        return userRepository.save(User.builder()
+                .username(name)
+                .password("password")
+                .email(name + "@example.com")
+                .roles(new HashSet<>())
+                .build());
+    }
+
+    private Folder createFolder(User owner, Folder parent, String name) {
+        return folderRepository.save(Folder.builder()
+                .name(name)
+                .owner(owner)
+                .parentFolder(parent)
+                .build());
+    }
+
+    private void createFiles(User owner, Folder folder, int count) {
+        for (int i = 0; i < count; i++) {
+            fileRepository.save(StoredFile.builder()
+                    .fileName("file-" + i)
+                    .originalFileName("file-" + i + ".txt")
+                    .contentType("text/plain")
+                    .size(10L)
+                    .physicalSize(10L)
+                    .contentEncoding(ContentEncoding.IDENTITY)
+                    .storagePath("test/" + UUID.randomUUID())
+                    .owner(owner)
+                    .folder(folder)
+                    .build());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.springBoot.saveMe.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica il filtro di Bloom dei token dei link pubblici: nessun falso negativo,
+ * anche con inserimenti concorrenti, e una frequenza di falsi positivi vicina a quella configurata.
+ */
+class TokenBloomFilterTest {
+
+    private static final int TOKENS = 20_000;
+    private static final int PROBES = 200_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    @Test
+    void insertedTokensAreAlwaysFound() {
+        TokenBloomFilter filter = new TokenBloomFilter(TOKENS, FALSE_POSITIVE_RATE);
+        List<String> tokens = randomTokens(TOKENS);
+        tokens.forEach(filter::put);
+
+        for (String token : tokens) {
+            assertTrue(filter.mightContain(token), "Falso negativo per il token " + token);
+        }
+    }
+
+    @Test
+    void concurrentInsertionsAreNotLost() {
+        TokenBloomFilter filter = new TokenBloomFilter(TOKENS, FALSE_POSITIVE_RATE);
+        List<String> tokens = randomTokens(TOKENS);
+        tokens.parallelStream().forEach(filter::put);
+
+        for (String token : tokens) {
+            assertTrue(filter.mightContain(token), "Falso negativo per il token " + token);
+        }
+    }
+
+    @Test
+    void falsePositiveRateMatchesConfiguration() {
+        TokenBloomFilter filter = new TokenBloomFilter(TOKENS, FALSE_POSITIVE_RATE);
+        randomTokens(TOKENS).forEach(filter::put);
+
+        long falsePositives = randomTokens(PROBES).stream().filter(filter::mightContain).count();
+        double observed = (double) falsePositives / PROBES;
+
+        // Con 200.000 prove la deviazione standard è circa 0,02 punti percentuali: il margine è ampio
+        assertTrue(observed < FALSE_POSITIVE_RATE * 1.5,
+                "Frequenza di falsi positivi troppo alta: " + observed);
+        assertTrue(observed > FALSE_POSITIVE_RATE * 0.5,
+                "Frequenza di falsi positivi troppo bassa, filtro sovradimensionato: " + observed);
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        TokenBloomFilter filter = new TokenBloomFilter(0, FALSE_POSITIVE_RATE);
+
+        for (String token : randomTokens(1_000)) {
+            assertFalse(filter.mightContain(token));
+        }
+    }
+
+    private static List<String> randomTokens(int count) {
+        return IntStream.range(0, count).mapToObj(i -> UUID.randomUUID().toString()).toList();
+    }
+}